@@ -25,6 +25,9 @@ import java.util.List;
  * All functionality is exposed via static methods.</p>
  */
 public final class CsvUtil {
+    /** Header row written at the top of every output file. */
+    public static final String OUTPUT_HEADER = "ProductID,Name,Price,Category,PriceRange";
+
     private CsvUtil() {}
 
     /**
@@ -83,25 +86,40 @@ public final class CsvUtil {
 
             while ((line = br.readLine()) != null) {
                 rowsRead++;
-                String[] t = line.split(",", -1);
-                if (t.length != 4) {
-                    rowsSkipped++;
-                    continue;
-                }
-                try {
-                    int id = Integer.parseInt(t[0].trim());
-                    String name = t[1].trim();
-                    BigDecimal price = new BigDecimal(t[2].trim());
-                    String category = t[3].trim();
-                    products.add(new Product(id, name, price, category));
-                } catch (Exception parseFailure) {
+                Product p = parseProduct(line);
+                if (p == null) {
                     rowsSkipped++;
+                } else {
+                    products.add(p);
                 }
             }
         }
         return new ReadResult(products, rowsRead, rowsSkipped);
     }
 
+    /**
+     * Parses one data row of the form {@code ProductID,Name,Price,Category}.
+     *
+     * @param line a CSV data row (not the header)
+     * @return the parsed product, or {@code null} if the row has the wrong
+     *         number of fields or a field fails to parse
+     */
+    public static Product parseProduct(String line) {
+        String[] t = line.split(",", -1);
+        if (t.length != 4) {
+            return null;
+        }
+        try {
+            int id = Integer.parseInt(t[0].trim());
+            String name = t[1].trim();
+            BigDecimal price = new BigDecimal(t[2].trim());
+            String category = t[3].trim();
+            return new Product(id, name, price, category);
+        } catch (Exception parseFailure) {
+            return null;
+        }
+    }
+
     /**
      * Writes a list of products to a CSV file.
      * <p>The output file will always begin with a header row:
@@ -116,7 +134,7 @@ public final class CsvUtil {
             Files.createDirectories(output.getParent());
         }
         try (BufferedWriter bw = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
-            bw.write("ProductID,Name,Price,Category,PriceRange");
+            bw.write(OUTPUT_HEADER);
             bw.newLine();
             for (Product p : products) {
                 bw.write(p.toCsvRow());
@@ -1,6 +1,15 @@
 package org.howard.edu.lsp.assignment3;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,20 +32,38 @@ import java.util.List;
  *
  * <p>The application uses relative paths and must be run from the project root 
  * (the directory containing {@code src/} and {@code data/}).</p>
+ *
+ * <p>With {@code --pipe} the application instead reads CSV from standard input
+ * and writes the transformed CSV to standard output, one row at a time, so it
+ * can sit in a shell pipeline (e.g. {@code zcat feed.gz | etl --pipe | loader}).
+ * The run summary then goes to standard error. If the downstream reader exits
+ * early, the run stops quietly.</p>
  */
 public class ETLPipelineApp {
     /** Input CSV file path (relative to project root). */
     private static final Path INPUT  = Paths.get("data", "products.csv");
     /** Output CSV file path (relative to project root). */
     private static final Path OUTPUT = Paths.get("data", "transformed_products.csv");
+    /** Channel and character buffer size used in pipe mode. */
+    private static final int PIPE_BUFFER = 1 << 16;
 
     /**
      * Program entry point.
      *
-     * @param args command-line arguments (not used)
+     * @param args {@code --pipe} to stream stdin to stdout; otherwise none
      */
     public static void main(String[] args) {
-        new ETLPipelineApp().run();
+        if (args.length == 1 && args[0].equals("--pipe")) {
+            int status = new ETLPipelineApp().runPipe();
+            if (status != 0) {
+                System.exit(status);
+            }
+        } else if (args.length == 0) {
+            new ETLPipelineApp().run();
+        } else {
+            System.err.println("Usage: ETLPipelineApp [--pipe]");
+            System.exit(2);
+        }
     }
 
     /**
@@ -94,6 +121,64 @@ public class ETLPipelineApp {
         System.out.println("Output written to: " + OUTPUT.toString());
     }
 
+    /**
+     * Executes the ETL process as a stream filter: each row is read from
+     * standard input, transformed and written to standard output before the
+     * next row is read. Both ends use {@link FileChannel}s with
+     * {@value #PIPE_BUFFER}-character buffers. The summary is printed to
+     * standard error.
+     *
+     * @return the process exit status: 0 on success or when the downstream
+     *         reader closed the pipe, 1 on any other I/O error
+     */
+    public int runPipe() {
+        int rowsRead = 0;
+        int rowsSkipped = 0;
+        int rowsTransformed = 0;
+
+        FileChannel inChannel = new FileInputStream(FileDescriptor.in).getChannel();
+        FileChannel outChannel = new FileOutputStream(FileDescriptor.out).getChannel();
+        BufferedReader in = new BufferedReader(
+                Channels.newReader(inChannel, StandardCharsets.UTF_8.newDecoder(), PIPE_BUFFER), PIPE_BUFFER);
+        BufferedWriter out = new BufferedWriter(
+                Channels.newWriter(outChannel, StandardCharsets.UTF_8.newEncoder(), PIPE_BUFFER), PIPE_BUFFER);
+        Transformer<Product> transformer = new ProductTransformer();
+
+        try {
+            out.write(CsvUtil.OUTPUT_HEADER);
+            out.newLine();
+            String line = in.readLine(); // header
+            if (line != null) {
+                while ((line = in.readLine()) != null) {
+                    rowsRead++;
+                    Product p = CsvUtil.parseProduct(line);
+                    if (p == null) {
+                        rowsSkipped++;
+                        continue;
+                    }
+                    transformer.transform(p);
+                    rowsTransformed++;
+                    out.write(p.toCsvRow());
+                    out.newLine();
+                }
+            }
+            out.flush();
+        } catch (IOException io) {
+            if (isBrokenPipe(io)) {
+                // Downstream stopped reading (e.g. "| head"); that is not an error.
+                System.err.println("Output closed by downstream; stopping.");
+                printSummary(System.err, rowsRead, rowsTransformed, rowsSkipped);
+                return 0;
+            }
+            System.err.println("ERROR in pipe mode: " + io.getMessage());
+            printSummary(System.err, rowsRead, rowsTransformed, rowsSkipped);
+            return 1;
+        }
+
+        printSummary(System.err, rowsRead, rowsTransformed, rowsSkipped);
+        return 0;
+    }
+
     /**
      * Prints a run summary to standard output.
      *
@@ -102,9 +187,38 @@ public class ETLPipelineApp {
      * @param skipped number of rows skipped due to parsing or validation errors
      */
     private void printSummary(int read, int transformed, int skipped) {
-        System.out.println("Run Summary");
-        System.out.println("Rows read:        " + read);
-        System.out.println("Rows transformed: " + transformed);
-        System.out.println("Rows skipped:     " + skipped);
+        printSummary(System.out, read, transformed, skipped);
+    }
+
+    /**
+     * Prints a run summary to the given stream.
+     *
+     * @param ps destination stream
+     * @param read number of rows read from input
+     * @param transformed number of rows successfully transformed
+     * @param skipped number of rows skipped due to parsing or validation errors
+     */
+    private void printSummary(PrintStream ps, int read, int transformed, int skipped) {
+        ps.println("Run Summary");
+        ps.println("Rows read:        " + read);
+        ps.println("Rows transformed: " + transformed);
+        ps.println("Rows skipped:     " + skipped);
+    }
+
+    /**
+     * Reports whether an I/O error was caused by the reader of standard output
+     * going away (EPIPE). The JDK only exposes this through the message text.
+     *
+     * @param io the error
+     * @return {@code true} for a broken pipe
+     */
+    private static boolean isBrokenPipe(IOException io) {
+        for (Throwable t = io; t != null; t = t.getCause()) {
+            String msg = t.getMessage();
+            if (msg != null && msg.contains("Broken pipe")) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -28,6 +28,85 @@ public class AreaCalculator {
         return (double) side * side;
     }
 
+    // --- bulk overloads ---
+    // Each fills out[i] with the area of entry i and returns how many entries were
+    // invalid (a dimension not > 0, or NaN) instead of throwing; those get NaN in out.
+    // Inputs are validated before anything is written, and entry i is read before
+    // out[i] is written, so out may be one of the inputs. When every entry is valid
+    // the area loop is plain arithmetic that the JIT can vectorize.
+
+    // Circle areas
+    public static int area(double[] radii, double[] out) {
+        checkLengths(radii.length, out.length);
+        int invalid = countInvalid(radii, radii);
+        if (invalid == 0) {
+            for (int i = 0; i < radii.length; i++) {
+                out[i] = Math.PI * radii[i] * radii[i];
+            }
+        } else {
+            for (int i = 0; i < radii.length; i++) {
+                double r = radii[i];
+                out[i] = r > 0 ? Math.PI * r * r : Double.NaN;
+            }
+        }
+        return invalid;
+    }
+
+    // Rectangle areas
+    public static int area(double[] widths, double[] heights, double[] out) {
+        checkLengths(widths.length, heights.length);
+        checkLengths(widths.length, out.length);
+        int invalid = countInvalid(widths, heights);
+        if (invalid == 0) {
+            for (int i = 0; i < widths.length; i++) {
+                out[i] = widths[i] * heights[i];
+            }
+        } else {
+            for (int i = 0; i < widths.length; i++) {
+                double w = widths[i];
+                double h = heights[i];
+                out[i] = w > 0 && h > 0 ? w * h : Double.NaN;
+            }
+        }
+        return invalid;
+    }
+
+    // Triangle (base & height) areas
+    public static int area(int[] bases, int[] heights, double[] out) {
+        checkLengths(bases.length, heights.length);
+        checkLengths(bases.length, out.length);
+        int invalid = countInvalid(bases, heights);
+        if (invalid == 0) {
+            for (int i = 0; i < bases.length; i++) {
+                out[i] = 0.5 * bases[i] * heights[i];
+            }
+        } else {
+            for (int i = 0; i < bases.length; i++) {
+                int b = bases[i];
+                int h = heights[i];
+                out[i] = b > 0 && h > 0 ? 0.5 * b * h : Double.NaN;
+            }
+        }
+        return invalid;
+    }
+
+    // Square (side length) areas
+    public static int area(int[] sides, double[] out) {
+        checkLengths(sides.length, out.length);
+        int invalid = countInvalid(sides, sides);
+        if (invalid == 0) {
+            for (int i = 0; i < sides.length; i++) {
+                out[i] = (double) sides[i] * sides[i];
+            }
+        } else {
+            for (int i = 0; i < sides.length; i++) {
+                int side = sides[i];
+                out[i] = side > 0 ? (double) side * side : Double.NaN;
+            }
+        }
+        return invalid;
+    }
+
     // --- helpers ---
     private static void validatePositive(double value, String name) {
         if (value <= 0) {
@@ -40,4 +119,26 @@ public class AreaCalculator {
             throw new IllegalArgumentException(name + " must be > 0");
         }
     }
+
+    private static void checkLengths(int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException("array lengths differ: " + expected + " vs " + actual);
+        }
+    }
+
+    private static int countInvalid(double[] a, double[] b) {
+        int invalid = 0;
+        for (int i = 0; i < a.length; i++) {
+            invalid += a[i] > 0 && b[i] > 0 ? 0 : 1;
+        }
+        return invalid;
+    }
+
+    private static int countInvalid(int[] a, int[] b) {
+        int invalid = 0;
+        for (int i = 0; i < a.length; i++) {
+            invalid += a[i] > 0 && b[i] > 0 ? 0 : 1;
+        }
+        return invalid;
+    }
 }
@@ -0,0 +1,98 @@
+package org.howard.edu.lsp.midterm.question2;
+
+import java.util.Random;
+
+/**
+ * Compares the scalar {@link AreaCalculator} overloads with the bulk array overloads.
+ * Run with an optional entry count: {@code java ...AreaCalculatorBenchmark 1000000}.
+ */
+public class AreaCalculatorBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random rnd = new Random(42);
+        double[] radii = new double[n];
+        double[] widths = new double[n];
+        double[] heights = new double[n];
+        int[] bases = new int[n];
+        int[] intHeights = new int[n];
+        int[] sides = new int[n];
+        for (int i = 0; i < n; i++) {
+            radii[i] = 0.1 + rnd.nextDouble() * 10;
+            widths[i] = 0.1 + rnd.nextDouble() * 10;
+            heights[i] = 0.1 + rnd.nextDouble() * 10;
+            bases[i] = 1 + rnd.nextInt(100);
+            intHeights[i] = 1 + rnd.nextInt(100);
+            sides[i] = 1 + rnd.nextInt(100);
+        }
+        double[] out = new double[n];
+
+        // Warm up both paths so the JIT has compiled them before timing, and
+        // repeat small inputs so each timed sample covers a few million entries.
+        int reps = Math.max(1, 4_000_000 / n);
+        for (int r = 0; r < 5 * reps; r++) {
+            scalar(radii, widths, heights, bases, intHeights, sides, out);
+            bulk(radii, widths, heights, bases, intHeights, sides, out);
+        }
+
+        long scalarNanos = Long.MAX_VALUE;
+        long bulkNanos = Long.MAX_VALUE;
+        double check = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            for (int k = 0; k < reps; k++) {
+                check += scalar(radii, widths, heights, bases, intHeights, sides, out);
+            }
+            long t1 = System.nanoTime();
+            for (int k = 0; k < reps; k++) {
+                check += bulk(radii, widths, heights, bases, intHeights, sides, out);
+            }
+            long t2 = System.nanoTime();
+            scalarNanos = Math.min(scalarNanos, (t1 - t0) / reps);
+            bulkNanos = Math.min(bulkNanos, (t2 - t1) / reps);
+        }
+
+        // Invalid entries: the bulk path reports them without throwing.
+        radii[0] = -1.0;
+        radii[n / 2] = 0.0;
+        int invalid = AreaCalculator.area(radii, out);
+
+        System.out.printf("entries per shape: %d (best of %d rounds, 4 shapes)%n", n, ROUNDS);
+        System.out.printf("scalar overloads: %.2f ns/area%n", scalarNanos / (4.0 * n));
+        System.out.printf("bulk overloads:   %.2f ns/area%n", bulkNanos / (4.0 * n));
+        System.out.printf("invalid radii reported: %d (checksum %.1f)%n", invalid, check);
+    }
+
+    private static double scalar(double[] radii, double[] widths, double[] heights,
+                                 int[] bases, int[] intHeights, int[] sides, double[] out) {
+        for (int i = 0; i < radii.length; i++) {
+            out[i] = AreaCalculator.area(radii[i]);
+        }
+        double sum = out[out.length - 1];
+        for (int i = 0; i < widths.length; i++) {
+            out[i] = AreaCalculator.area(widths[i], heights[i]);
+        }
+        sum += out[out.length - 1];
+        for (int i = 0; i < bases.length; i++) {
+            out[i] = AreaCalculator.area(bases[i], intHeights[i]);
+        }
+        sum += out[out.length - 1];
+        for (int i = 0; i < sides.length; i++) {
+            out[i] = AreaCalculator.area(sides[i]);
+        }
+        return sum + out[out.length - 1];
+    }
+
+    private static double bulk(double[] radii, double[] widths, double[] heights,
+                               int[] bases, int[] intHeights, int[] sides, double[] out) {
+        AreaCalculator.area(radii, out);
+        double sum = out[out.length - 1];
+        AreaCalculator.area(widths, heights, out);
+        sum += out[out.length - 1];
+        AreaCalculator.area(bases, intHeights, out);
+        sum += out[out.length - 1];
+        AreaCalculator.area(sides, out);
+        return sum + out[out.length - 1];
+    }
+}
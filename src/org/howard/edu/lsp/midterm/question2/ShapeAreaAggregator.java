@@ -0,0 +1,292 @@
+package org.howard.edu.lsp.midterm.question2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Streams shape records and totals their areas in parallel.
+ * <p>
+ * Each line is one record: {@code circle,<radius>}, {@code rectangle,<width>,<height>},
+ * {@code triangle,<base>,<height>} or {@code square,<side>}. Triangle and square
+ * dimensions are integers, matching the {@link AreaCalculator} overloads. Blank
+ * lines are ignored; malformed records, records with a dimension that is not
+ * finite or not {@code > 0}, and records whose area overflows are counted as
+ * skipped, so one bad record cannot turn the total into {@code NaN}.
+ * </p>
+ *
+ * <p>The input is cut into chunks of {@value #CHUNK_RECORDS} lines, each chunk is
+ * computed on a {@link ForkJoinPool} with the bulk {@code AreaCalculator}
+ * overloads, and chunk results are merged in file order using Neumaier
+ * compensated summation. Chunk boundaries depend only on the input, so totals
+ * are bit-for-bit the same for any parallelism. Only a few chunks per worker are
+ * in memory at a time.</p>
+ */
+public class ShapeAreaAggregator {
+    /** Lines per chunk. */
+    static final int CHUNK_RECORDS = 8192;
+
+    /**
+     * Shapes understood by the parser.
+     */
+    public enum Shape { CIRCLE, RECTANGLE, TRIANGLE, SQUARE }
+
+    private static final Shape[] SHAPES = Shape.values();
+
+    /**
+     * Totals for one input.
+     */
+    public static final class Result {
+        private final long[] counts;
+        private final double[] subtotals;
+        private final double total;
+        private final long skipped;
+
+        Result(long[] counts, double[] subtotals, double total, long skipped) {
+            this.counts = counts;
+            this.subtotals = subtotals;
+            this.total = total;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return summed area of all valid records
+         */
+        public double total() {
+            return total;
+        }
+
+        /**
+         * @param shape a shape type
+         * @return summed area of valid records of that type
+         */
+        public double subtotal(Shape shape) {
+            return subtotals[shape.ordinal()];
+        }
+
+        /**
+         * @param shape a shape type
+         * @return number of valid records of that type
+         */
+        public long count(Shape shape) {
+            return counts[shape.ordinal()];
+        }
+
+        /**
+         * @return number of malformed or invalid records
+         */
+        public long skipped() {
+            return skipped;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Uses the common fork-join pool.
+     */
+    public ShapeAreaAggregator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool pool the chunks are computed on
+     */
+    public ShapeAreaAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param file a UTF-8 shape file
+     * @return totals for the file
+     * @throws IOException if the file cannot be read
+     */
+    public Result aggregate(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return aggregate(in);
+        }
+    }
+
+    /**
+     * Reads {@code in} to the end. The reader is not closed.
+     *
+     * @param in shape records, one per line
+     * @return totals for the input
+     * @throws IOException if reading fails
+     */
+    public Result aggregate(BufferedReader in) throws IOException {
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<Partial>> inFlight = new ArrayDeque<>(window);
+        Partial total = new Partial();
+        List<String> chunk = new ArrayList<>(CHUNK_RECORDS);
+        String line;
+        while ((line = in.readLine()) != null) {
+            chunk.add(line);
+            if (chunk.size() == CHUNK_RECORDS) {
+                if (inFlight.size() == window) {
+                    total.merge(inFlight.poll().join());
+                }
+                List<String> lines = chunk;
+                inFlight.add(pool.submit(() -> compute(lines)));
+                chunk = new ArrayList<>(CHUNK_RECORDS);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            List<String> lines = chunk;
+            inFlight.add(pool.submit(() -> compute(lines)));
+        }
+        while (!inFlight.isEmpty()) {
+            total.merge(inFlight.poll().join());
+        }
+        return total.toResult();
+    }
+
+    // --- helpers ---
+
+    private static Partial compute(List<String> lines) {
+        int n = lines.size();
+        double[] radii = new double[n];
+        double[] widths = new double[n];
+        double[] heights = new double[n];
+        int[] bases = new int[n];
+        int[] triHeights = new int[n];
+        int[] sides = new int[n];
+        int circles = 0;
+        int rectangles = 0;
+        int triangles = 0;
+        int squares = 0;
+        long malformed = 0;
+
+        for (String line : lines) {
+            String[] f = line.split(",", -1);
+            if (f.length == 1 && f[0].isBlank()) {
+                continue;
+            }
+            try {
+                switch (f[0].trim().toLowerCase(Locale.ROOT)) {
+                    case "circle":
+                        if (f.length != 2) {
+                            break;
+                        }
+                        double r = Double.parseDouble(f[1].trim());
+                        if (!Double.isFinite(r)) {
+                            break; // "Infinity", "NaN" or out of range, e.g. 1e400
+                        }
+                        radii[circles++] = r;
+                        continue;
+                    case "rectangle":
+                        if (f.length != 3) {
+                            break;
+                        }
+                        double w = Double.parseDouble(f[1].trim());
+                        double h = Double.parseDouble(f[2].trim());
+                        if (!Double.isFinite(w) || !Double.isFinite(h)) {
+                            break;
+                        }
+                        widths[rectangles] = w;
+                        heights[rectangles++] = h;
+                        continue;
+                    case "triangle":
+                        if (f.length != 3) {
+                            break;
+                        }
+                        int b = Integer.parseInt(f[1].trim());
+                        triHeights[triangles] = Integer.parseInt(f[2].trim());
+                        bases[triangles++] = b;
+                        continue;
+                    case "square":
+                        if (f.length != 2) {
+                            break;
+                        }
+                        int side = Integer.parseInt(f[1].trim());
+                        sides[squares++] = side;
+                        continue;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                // counted below
+            }
+            malformed++;
+        }
+
+        Partial p = new Partial();
+        p.skipped = malformed;
+        double[] out = new double[circles];
+        p.add(Shape.CIRCLE, out, AreaCalculator.area(Arrays.copyOf(radii, circles), out));
+        out = new double[rectangles];
+        p.add(Shape.RECTANGLE, out, AreaCalculator.area(Arrays.copyOf(widths, rectangles),
+                Arrays.copyOf(heights, rectangles), out));
+        out = new double[triangles];
+        p.add(Shape.TRIANGLE, out, AreaCalculator.area(Arrays.copyOf(bases, triangles),
+                Arrays.copyOf(triHeights, triangles), out));
+        out = new double[squares];
+        p.add(Shape.SQUARE, out, AreaCalculator.area(Arrays.copyOf(sides, squares), out));
+        return p;
+    }
+
+    /** Per-shape Neumaier sums for one chunk or for the running total. */
+    private static final class Partial {
+        final double[] sum = new double[SHAPES.length];
+        final double[] compensation = new double[SHAPES.length];
+        final long[] count = new long[SHAPES.length];
+        long skipped;
+
+        /**
+         * Adds one chunk's areas for a shape. NaN entries are the invalid ones;
+         * infinite entries overflowed and are skipped as well.
+         */
+        void add(Shape shape, double[] areas, int invalid) {
+            int k = shape.ordinal();
+            int overflowed = 0;
+            for (double a : areas) {
+                if (Double.isFinite(a)) {
+                    add(k, a);
+                } else if (!Double.isNaN(a)) {
+                    overflowed++;
+                }
+            }
+            count[k] += areas.length - invalid - overflowed;
+            skipped += invalid + overflowed;
+        }
+
+        void merge(Partial other) {
+            for (int k = 0; k < SHAPES.length; k++) {
+                add(k, other.sum[k]);
+                compensation[k] += other.compensation[k];
+                count[k] += other.count[k];
+            }
+            skipped += other.skipped;
+        }
+
+        Result toResult() {
+            double[] subtotals = new double[SHAPES.length];
+            double total = 0;
+            double c = 0;
+            for (int k = 0; k < SHAPES.length; k++) {
+                subtotals[k] = sum[k] + compensation[k];
+                double t = total + subtotals[k];
+                c += Math.abs(total) >= Math.abs(subtotals[k])
+                        ? (total - t) + subtotals[k] : (subtotals[k] - t) + total;
+                total = t;
+            }
+            return new Result(count, subtotals, total + c, skipped);
+        }
+
+        private void add(int k, double x) {
+            double s = sum[k];
+            double t = s + x;
+            compensation[k] += Math.abs(s) >= Math.abs(x) ? (s - t) + x : (x - t) + s;
+            sum[k] = t;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.howard.edu.lsp.midterm.question2;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prints the total area of a shape file, with per-shape subtotals.
+ * Usage: {@code TotalAreaApp <file> [threads]}.
+ */
+public class TotalAreaApp {
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            usage();
+        }
+        Path file = Paths.get(args[0]);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (args.length == 2) {
+            try {
+                pool = new ForkJoinPool(Integer.parseInt(args[1]));
+            } catch (IllegalArgumentException e) { // not a number, or not a valid parallelism
+                usage();
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            ShapeAreaAggregator.Result r = new ShapeAreaAggregator(pool).aggregate(file);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            for (ShapeAreaAggregator.Shape shape : ShapeAreaAggregator.Shape.values()) {
+                System.out.printf("%-10s count = %d, area = %s%n",
+                        shape.name().toLowerCase(Locale.ROOT), r.count(shape), r.subtotal(shape));
+            }
+            System.out.println("Total area = " + r.total());
+            System.out.println("Skipped records = " + r.skipped());
+            System.out.println("Time (ms) = " + millis);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: TotalAreaApp <file> [threads]");
+        System.exit(2);
+    }
+}
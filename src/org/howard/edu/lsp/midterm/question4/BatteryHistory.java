@@ -0,0 +1,163 @@
+package org.howard.edu.lsp.midterm.question4;
+
+/**
+ * Fixed-size history of recent battery readings for one device.
+ * <p>
+ * Samples are delta-encoded: each slot of the ring holds a {@code byte} with the
+ * change in percent from the previous sample and a {@code char} with the seconds
+ * elapsed since it, so a sample costs three bytes. Only the newest value and time
+ * are stored in full, and queries walk backwards from them, which keeps recent
+ * samples exact. Gaps longer than {@value #MAX_GAP_SECONDS} seconds are clamped,
+ * so only the timing of samples that precede such a gap is approximate.
+ * </p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public class BatteryHistory {
+    private static final int MAX_GAP_SECONDS = Character.MAX_VALUE;
+
+    private final byte[] valueDeltas;
+    private final char[] timeDeltas;
+    private int newest = -1;
+    private int count;
+    private int latestPercent;
+    private long latestEpochSeconds;
+
+    /**
+     * @param capacity number of samples kept; older samples are overwritten
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public BatteryHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.valueDeltas = new byte[capacity];
+        this.timeDeltas = new char[capacity];
+    }
+
+    /**
+     * Appends a reading. Readings are expected in time order; an earlier
+     * timestamp is treated as arriving at the same second as the previous one.
+     *
+     * @param percent battery percent, 0..100
+     * @param epochSeconds time of the reading
+     */
+    synchronized void record(int percent, long epochSeconds) {
+        int slot = (newest + 1) % valueDeltas.length;
+        if (count == 0) {
+            valueDeltas[slot] = 0;
+            timeDeltas[slot] = 0;
+        } else {
+            long gap = Math.max(0, epochSeconds - latestEpochSeconds);
+            valueDeltas[slot] = (byte) (percent - latestPercent);
+            timeDeltas[slot] = (char) Math.min(gap, MAX_GAP_SECONDS);
+            epochSeconds = latestEpochSeconds + gap;
+        }
+        newest = slot;
+        count = Math.min(count + 1, valueDeltas.length);
+        latestPercent = percent;
+        latestEpochSeconds = epochSeconds;
+    }
+
+    /**
+     * @return number of samples currently held
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return the most recent reading, or -1 if there are none
+     */
+    public synchronized int latest() {
+        return count == 0 ? -1 : latestPercent;
+    }
+
+    /**
+     * @param windowSeconds how far back to look
+     * @param nowEpochSeconds the end of the window
+     * @return lowest reading in the window, or -1 if the window has no samples
+     */
+    public synchronized int min(long windowSeconds, long nowEpochSeconds) {
+        long from = nowEpochSeconds - windowSeconds;
+        int min = -1;
+        int value = latestPercent;
+        long time = latestEpochSeconds;
+        int slot = newest;
+        for (int i = 0; i < count && time >= from; i++) {
+            if (time <= nowEpochSeconds && (min < 0 || value < min)) {
+                min = value;
+            }
+            value -= valueDeltas[slot];
+            time -= timeDeltas[slot];
+            slot = previous(slot);
+        }
+        return min;
+    }
+
+    /**
+     * @param windowSeconds how far back to look
+     * @param nowEpochSeconds the end of the window
+     * @return mean of the readings in the window, or {@code NaN} if there are none
+     */
+    public synchronized double average(long windowSeconds, long nowEpochSeconds) {
+        long from = nowEpochSeconds - windowSeconds;
+        long sum = 0;
+        int n = 0;
+        int value = latestPercent;
+        long time = latestEpochSeconds;
+        int slot = newest;
+        for (int i = 0; i < count && time >= from; i++) {
+            if (time <= nowEpochSeconds) {
+                sum += value;
+                n++;
+            }
+            value -= valueDeltas[slot];
+            time -= timeDeltas[slot];
+            slot = previous(slot);
+        }
+        return n == 0 ? Double.NaN : (double) sum / n;
+    }
+
+    /**
+     * Drain rate between the oldest and newest readings in the window.
+     *
+     * @param windowSeconds how far back to look
+     * @param nowEpochSeconds the end of the window
+     * @return percent lost per hour (negative while charging), or {@code NaN} if the
+     *         window holds fewer than two readings at distinct times
+     */
+    public synchronized double drainPerHour(long windowSeconds, long nowEpochSeconds) {
+        long from = nowEpochSeconds - windowSeconds;
+        int value = latestPercent;
+        long time = latestEpochSeconds;
+        int slot = newest;
+        boolean found = false;
+        int newestValue = 0;
+        long newestTime = 0;
+        int oldestValue = 0;
+        long oldestTime = 0;
+        for (int i = 0; i < count && time >= from; i++) {
+            if (time <= nowEpochSeconds) {
+                if (!found) {
+                    newestValue = value;
+                    newestTime = time;
+                    found = true;
+                }
+                oldestValue = value;
+                oldestTime = time;
+            }
+            value -= valueDeltas[slot];
+            time -= timeDeltas[slot];
+            slot = previous(slot);
+        }
+        if (!found || newestTime == oldestTime) {
+            return Double.NaN;
+        }
+        return (oldestValue - newestValue) * 3600.0 / (newestTime - oldestTime);
+    }
+
+    private int previous(int slot) {
+        return slot == 0 ? valueDeltas.length - 1 : slot - 1;
+    }
+}
@@ -0,0 +1,69 @@
+package org.howard.edu.lsp.midterm.question4;
+
+/**
+ * Battery bookkeeping shared by {@link Camera} and {@link DoorLock}: the current
+ * percent, its {@link BatteryHistory}, and the {@link LowBatteryIndex} (if any)
+ * that must hear about every change.
+ */
+final class BatteryState {
+    /** Samples kept per device. */
+    static final int HISTORY_SAMPLES = 32;
+
+    private final BatteryHistory history = new BatteryHistory(HISTORY_SAMPLES);
+    private volatile int percent;
+    private LowBatteryIndex index;
+
+    /**
+     * @param device any device
+     * @return the device's battery state, or {@code null} if it does not keep one
+     */
+    static BatteryState of(Device device) {
+        if (device instanceof Camera) {
+            return ((Camera) device).batteryState();
+        }
+        if (device instanceof DoorLock) {
+            return ((DoorLock) device).batteryState();
+        }
+        return null;
+    }
+
+    int get() {
+        return percent;
+    }
+
+    BatteryHistory history() {
+        return history;
+    }
+
+    /**
+     * Stores a validated reading, records it in the history and moves the owner
+     * between index buckets.
+     *
+     * @return {@code true} if the percent changed
+     */
+    synchronized boolean set(BatteryPowered owner, int newPercent) {
+        int old = percent;
+        percent = newPercent;
+        history.record(newPercent, System.currentTimeMillis() / 1000);
+        if (index != null && old != newPercent) {
+            index.move(owner, old, newPercent);
+        }
+        return old != newPercent;
+    }
+
+    synchronized void attach(LowBatteryIndex newIndex, BatteryPowered owner) {
+        if (index != null) {
+            index.remove(owner, percent);
+        }
+        index = newIndex;
+        if (newIndex != null) {
+            newIndex.add(owner, percent);
+        }
+    }
+
+    synchronized void detach(LowBatteryIndex from, BatteryPowered owner) {
+        if (index == from) {
+            attach(null, owner);
+        }
+    }
+}
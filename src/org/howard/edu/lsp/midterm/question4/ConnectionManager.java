@@ -0,0 +1,300 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Asynchronous, bulk connect/disconnect for {@link Networked} devices.
+ * <p>
+ * Each request runs the slow {@link NetworkTransport} call on an executor and
+ * completes a {@link CompletableFuture} once the device's connected flag has been
+ * updated. The manager:
+ * <ul>
+ *   <li>limits how many calls run at once for each {@link Device#getLocation()},
+ *       queueing the rest without blocking any thread;</li>
+ *   <li>retries failed calls with exponential backoff and full jitter, giving up
+ *       the location slot while it waits;</li>
+ *   <li>reports progress of bulk operations through a {@link ProgressListener}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>If the executor rejects a call, for example because it has been shut down,
+ * the device's future completes exceptionally with the
+ * {@link RejectedExecutionException} and its location slot is freed.</p>
+ *
+ * <p>{@link #defaultExecutor()} uses one virtual thread per task when the JDK
+ * provides them (Java 21+) and falls back to a cached pool of daemon threads.</p>
+ */
+public class ConnectionManager {
+    /** Upper bound for a single backoff delay. */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * Receives progress updates for a bulk operation. Calls may arrive concurrently
+     * from several threads, so implementations must be thread-safe.
+     */
+    public interface ProgressListener {
+        /**
+         * @param succeeded devices finished successfully so far
+         * @param failed devices that ran out of attempts so far
+         * @param total devices in the bulk operation
+         */
+        void onProgress(int succeeded, int failed, int total);
+    }
+
+    /**
+     * Outcome of a bulk connect or disconnect.
+     */
+    public static final class BulkResult {
+        /** Number of devices that completed successfully. */
+        public final int succeeded;
+        /** Ids of devices that failed after all attempts. */
+        public final List<String> failedIds;
+
+        BulkResult(int succeeded, List<String> failedIds) {
+            this.succeeded = succeeded;
+            this.failedIds = Collections.unmodifiableList(failedIds);
+        }
+    }
+
+    private final NetworkTransport transport;
+    private final Executor executor;
+    private final int maxPerLocation;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param transport performs the actual network calls
+     * @param executor runs transport calls; see {@link #defaultExecutor()}
+     * @param maxPerLocation maximum concurrent calls per location
+     * @param maxAttempts attempts per device before giving up (1 means no retries)
+     * @param baseBackoffMillis backoff ceiling before the first retry; doubles on each retry
+     * @throws IllegalArgumentException if an argument is null or out of range
+     */
+    public ConnectionManager(NetworkTransport transport, Executor executor,
+                             int maxPerLocation, int maxAttempts, long baseBackoffMillis) {
+        if (transport == null || executor == null) {
+            throw new IllegalArgumentException("transport and executor must not be null");
+        }
+        if (maxPerLocation <= 0 || maxAttempts <= 0 || baseBackoffMillis < 0) {
+            throw new IllegalArgumentException("maxPerLocation and maxAttempts must be > 0, backoff >= 0");
+        }
+        this.transport = transport;
+        this.executor = executor;
+        this.maxPerLocation = maxPerLocation;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    /**
+     * Creates an executor suited to blocking network calls: virtual threads when
+     * available, otherwise a cached pool of daemon platform threads. The caller
+     * owns the executor and should shut it down when done.
+     *
+     * @return a new executor service
+     */
+    public static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException notAvailable) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "device-connect");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Connects a device asynchronously.
+     *
+     * @param device a device implementing {@link Networked}
+     * @return a future completed once the device is connected, or exceptionally
+     *         with the last failure after all attempts
+     * @throws IllegalArgumentException if the device is not {@link Networked}
+     */
+    public CompletableFuture<Void> connectAsync(Device device) {
+        return submit(device, true);
+    }
+
+    /**
+     * Disconnects a device asynchronously.
+     *
+     * @param device a device implementing {@link Networked}
+     * @return a future completed once the device is disconnected, or exceptionally
+     *         with the last failure after all attempts
+     * @throws IllegalArgumentException if the device is not {@link Networked}
+     */
+    public CompletableFuture<Void> disconnectAsync(Device device) {
+        return submit(device, false);
+    }
+
+    /**
+     * Connects every {@link Networked} device in {@code devices}; other devices are ignored.
+     *
+     * @param devices devices to connect
+     * @param listener progress callback, or {@code null}
+     * @return a future that completes (never exceptionally) once every device has finished
+     */
+    public CompletableFuture<BulkResult> connectAll(Collection<? extends Device> devices, ProgressListener listener) {
+        return bulk(devices, true, listener);
+    }
+
+    /**
+     * Disconnects every {@link Networked} device in {@code devices}; other devices are ignored.
+     *
+     * @param devices devices to disconnect
+     * @param listener progress callback, or {@code null}
+     * @return a future that completes (never exceptionally) once every device has finished
+     */
+    public CompletableFuture<BulkResult> disconnectAll(Collection<? extends Device> devices, ProgressListener listener) {
+        return bulk(devices, false, listener);
+    }
+
+    // --- helpers ---
+
+    private CompletableFuture<BulkResult> bulk(Collection<? extends Device> devices, boolean connect,
+                                               ProgressListener listener) {
+        List<Device> targets = new ArrayList<>();
+        for (Device d : devices) {
+            if (d instanceof Networked) {
+                targets.add(d);
+            }
+        }
+        int total = targets.size();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<String> failedIds = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] all = new CompletableFuture<?>[total];
+        for (int i = 0; i < total; i++) {
+            Device d = targets.get(i);
+            all[i] = submit(d, connect).handle((v, err) -> {
+                int ok;
+                int bad;
+                if (err == null) {
+                    ok = succeeded.incrementAndGet();
+                    bad = failed.get();
+                } else {
+                    failedIds.add(d.getId());
+                    bad = failed.incrementAndGet();
+                    ok = succeeded.get();
+                }
+                if (listener != null) {
+                    listener.onProgress(ok, bad, total);
+                }
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(all)
+                .thenApply(v -> new BulkResult(succeeded.get(), new ArrayList<>(failedIds)));
+    }
+
+    private CompletableFuture<Void> submit(Device device, boolean connect) {
+        if (!(device instanceof Networked)) {
+            throw new IllegalArgumentException("device is not Networked: " + device);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Lane lane = lanes.computeIfAbsent(device.getLocation(), k -> new Lane());
+        lane.submit(() -> attempt(device, connect, 1, lane, result));
+        return result;
+    }
+
+    /**
+     * Starts one attempt on the executor.
+     *
+     * @return {@code false} if the executor rejected it; {@code result} has then
+     *         been completed exceptionally and the caller still owns the lane slot
+     */
+    private boolean attempt(Device device, boolean connect, int attempt, Lane lane, CompletableFuture<Void> result) {
+        CompletableFuture<Void> call;
+        try {
+            call = CompletableFuture.runAsync(() -> {
+                try {
+                    if (connect) {
+                        transport.open(device);
+                        ((Networked) device).connect();
+                    } else {
+                        transport.close(device);
+                        ((Networked) device).disconnect();
+                    }
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return false;
+        }
+        call.whenComplete((v, err) -> {
+            lane.release();
+            if (err == null) {
+                result.complete(null);
+            } else if (attempt < maxAttempts) {
+                // Only the wait runs on the JDK's delay scheduler; the retry goes back
+                // through the lane to the executor, where a rejection is caught above.
+                Executor later = CompletableFuture.delayedExecutor(backoff(attempt), TimeUnit.MILLISECONDS);
+                later.execute(() -> lane.submit(() -> attempt(device, connect, attempt + 1, lane, result)));
+            } else {
+                result.completeExceptionally(err instanceof CompletionException && err.getCause() != null
+                        ? err.getCause() : err);
+            }
+        });
+        return true;
+    }
+
+    /** Full jitter: uniform in [0, min(cap, base * 2^(attempt-1))]. */
+    private long backoff(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt - 1, 20);
+        return ThreadLocalRandom.current().nextLong(Math.min(ceiling, MAX_BACKOFF_MILLIS) + 1);
+    }
+
+    /**
+     * Per-location admission: at most {@code maxPerLocation} attempts run at once.
+     * A start returns {@code false} if it could not start, and its slot passes on.
+     */
+    private final class Lane {
+        private final ArrayDeque<BooleanSupplier> waiting = new ArrayDeque<>();
+        private int active;
+
+        void submit(BooleanSupplier start) {
+            synchronized (this) {
+                if (active >= maxPerLocation) {
+                    waiting.add(start);
+                    return;
+                }
+                active++;
+            }
+            if (!start.getAsBoolean()) {
+                release();
+            }
+        }
+
+        void release() {
+            BooleanSupplier next;
+            do {
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+            } while (!next.getAsBoolean()); // hand the slot straight to the next waiter
+        }
+    }
+}
@@ -2,9 +2,14 @@ package org.howard.edu.lsp.midterm.question4;
 
 public abstract class Device {
   private String id;
-  private String location;
-  private long lastHeartbeatEpochSeconds;
-  private boolean connected;
+  private volatile String location;
+  private volatile long lastHeartbeatEpochSeconds;
+  private volatile boolean connected;
+  // Set when connection (or a subclass's battery/temperature) changes; see FleetStatusReporter.
+  private volatile boolean statusDirty = true;
+  private volatile DeviceEventBus eventBus;
+  private volatile HeartbeatWheel heartbeatWheel;
+  private volatile LocationIndex locationIndex;
 
   // PROVIDED CONSTRUCTOR
   public Device(String id, String location) {
@@ -25,6 +30,33 @@ public abstract class Device {
     return location;
   }
 
+  // Moves the device, refiling it in the LocationIndex that holds it, if any.
+  public void setLocation(String location) {
+    if (location == null || location.isEmpty()) {
+      throw new IllegalArgumentException("Invalid id or location");
+    }
+    LocationIndex index = locationIndex;
+    if (index != null) {
+      index.relocate(this, location);
+      return;
+    }
+    relocate(location);
+    // An index that attached meanwhile may have filed the old location; it refiles under its lock.
+    index = locationIndex;
+    if (index != null) {
+      index.relocate(this, location);
+    }
+  }
+
+  // Changes the location without telling an index; LocationIndex calls this while refiling.
+  void relocate(String location) {
+    String old = this.location;
+    this.location = location;
+    if (!location.equals(old)) {
+      publishEvent(DeviceEventBus.Type.MOVED, 0, 0);
+    }
+  }
+
   public long getLastHeartbeatEpochSeconds() {
     return lastHeartbeatEpochSeconds;
   }
@@ -34,12 +66,94 @@ public abstract class Device {
   }
 
   protected void setConnected(boolean connected) {
-    this.connected = connected;
+    if (this.connected != connected) {
+      this.connected = connected;
+      markStatusDirty();
+      LocationIndex index = locationIndex;
+      if (index != null) {
+        index.connectionChanged(this);
+      }
+    }
+    publishEvent(connected ? DeviceEventBus.Type.CONNECTED : DeviceEventBus.Type.DISCONNECTED, 0, 0);
+  }
+
+  protected void markStatusDirty() {
+    this.statusDirty = true;
+  }
+
+  // Clears the dirty flag before the caller reads state, so a concurrent change is never lost.
+  boolean takeStatusDirty() {
+    if (!statusDirty) {
+      return false;
+    }
+    statusDirty = false;
+    return true;
   }
 
   public void heartbeat() {
-    this.lastHeartbeatEpochSeconds = System.currentTimeMillis() / 1000;
+    heartbeat(System.currentTimeMillis() / 1000);
+  }
+
+  // Records a heartbeat observed at a known time (e.g. a gateway-supplied timestamp).
+  // Re-arms the device's timer if a HeartbeatWheel tracks it.
+  public void heartbeat(long epochSeconds) {
+    this.lastHeartbeatEpochSeconds = epochSeconds;
+    HeartbeatWheel wheel = heartbeatWheel;
+    if (wheel != null) {
+      wheel.rearm(this);
+    }
+    publishEvent(DeviceEventBus.Type.HEARTBEAT, epochSeconds, 0);
+  }
+
+  // Publishes to the attached DeviceEventBus, if any; never blocks or allocates.
+  protected void publishEvent(DeviceEventBus.Type type, long longValue, double doubleValue) {
+    DeviceEventBus bus = eventBus;
+    if (bus != null) {
+      bus.publish(type, this, longValue, doubleValue);
+    }
+  }
+
+  void attachEventBus(DeviceEventBus bus) {
+    this.eventBus = bus;
+  }
+
+  void detachEventBus(DeviceEventBus bus) {
+    if (this.eventBus == bus) {
+      this.eventBus = null;
+    }
+  }
+
+  void attachHeartbeatWheel(HeartbeatWheel wheel) {
+    this.heartbeatWheel = wheel;
+  }
+
+  void detachHeartbeatWheel(HeartbeatWheel wheel) {
+    if (this.heartbeatWheel == wheel) {
+      this.heartbeatWheel = null;
+    }
+  }
+
+  void attachLocationIndex(LocationIndex index) {
+    this.locationIndex = index;
+  }
+
+  void detachLocationIndex(LocationIndex index) {
+    if (this.locationIndex == index) {
+      this.locationIndex = null;
+    }
+  }
+
+  // Identity equality, but hashed by id: ids are unique within a fleet and String caches
+  // its hash, which makes the registry's and indexes' hash sets cheaper to fill.
+  @Override
+  public int hashCode() {
+    return id.hashCode();
   }
 
   public abstract String getStatus();
+
+  // Appends getStatus() to sb; subclasses override to avoid building an intermediate String.
+  public void appendStatus(StringBuilder sb) {
+    sb.append(getStatus());
+  }
 }
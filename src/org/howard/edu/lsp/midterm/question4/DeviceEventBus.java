@@ -0,0 +1,255 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stream of device state changes backed by a preallocated ring buffer, in the
+ * style of the LMAX Disruptor.
+ * <p>
+ * Devices {@link #attach(Device) attached} to the bus publish an event for every
+ * {@code connect()}, {@code disconnect()}, {@code heartbeat()},
+ * {@code setBatteryPercent()}, {@code setTemperatureC()} and location change,
+ * and when it is registered with or removed from a {@link DeviceRegistry}. Any number of
+ * threads may publish: a writer claims the next sequence with a CAS, fills the
+ * preallocated {@link Event} in that slot and marks the slot published. The
+ * update path never allocates and never blocks; if the slowest consumer is a
+ * full ring behind, the event is dropped and counted instead.
+ * </p>
+ *
+ * <p>Each {@link Subscription} tracks its own position and drains events at its
+ * own pace with {@link Subscription#poll(Handler, int)}, receiving up to a batch
+ * of events per call with an end-of-batch flag, so slow consumers such as audit
+ * writers can amortize their work.</p>
+ */
+public class DeviceEventBus {
+    /**
+     * Kinds of state change. {@code REGISTERED} and {@code UNREGISTERED} are
+     * published by {@link DeviceRegistry}; {@code MOVED} by
+     * {@link Device#setLocation(String)}.
+     */
+    public enum Type {
+        CONNECTED, DISCONNECTED, HEARTBEAT, BATTERY, TEMPERATURE, REGISTERED, UNREGISTERED, MOVED
+    }
+
+    /**
+     * One slot of the ring. Instances are reused: read fields only inside
+     * {@link Handler#onEvent} and copy anything needed later.
+     */
+    public static final class Event {
+        private Type type;
+        private Device device;
+        private long longValue;
+        private double doubleValue;
+        private long timestampMillis;
+
+        /** @return the kind of change */
+        public Type getType() { return type; }
+        /** @return the device that changed */
+        public Device getDevice() { return device; }
+        /** @return heartbeat epoch seconds or battery percent; 0 for other types */
+        public long getLongValue() { return longValue; }
+        /** @return temperature in °C for {@link Type#TEMPERATURE}; 0 for other types */
+        public double getDoubleValue() { return doubleValue; }
+        /** @return wall-clock time the event was published */
+        public long getTimestampMillis() { return timestampMillis; }
+    }
+
+    /**
+     * Receives events from {@link Subscription#poll(Handler, int)}.
+     */
+    public interface Handler {
+        /**
+         * @param event the event; only valid during this call
+         * @param sequence the event's position in the stream
+         * @param endOfBatch {@code true} for the last event delivered by this poll
+         */
+        void onEvent(Event event, long sequence, boolean endOfBatch);
+    }
+
+    /**
+     * An independent reader of the stream. A subscription must be polled by one
+     * thread at a time.
+     */
+    public final class Subscription {
+        private final AtomicLong sequence;
+        /** {@link #dropped()} as of the last {@link #takeMissed()}. */
+        private long missedSeen;
+
+        private Subscription(long start, long droppedAtStart) {
+            this.sequence = new AtomicLong(start);
+            this.missedSeen = droppedAtStart;
+        }
+
+        /**
+         * Delivers available events to {@code handler}.
+         *
+         * @param handler receives the events
+         * @param maxBatch most events to deliver in this call
+         * @return number of events delivered
+         */
+        public int poll(Handler handler, int maxBatch) {
+            long first = sequence.get() + 1;
+            long last = first - 1;
+            long limit = first + maxBatch;
+            while (last + 1 < limit && published.get(index(last + 1)) == last + 1) {
+                last++;
+            }
+            for (long seq = first; seq <= last; seq++) {
+                handler.onEvent(ring[index(seq)], seq, seq == last);
+            }
+            if (last >= first) {
+                sequence.lazySet(last);
+            }
+            return (int) (last - first + 1);
+        }
+
+        /**
+         * @return number of published events this subscription has not read yet
+         */
+        public long lag() {
+            return Math.max(0, claimed.get() - sequence.get());
+        }
+
+        /**
+         * Returns how many events were dropped since the previous call, or since
+         * this subscription was created. A dropped event is never published, so
+         * every subscription misses it: a non-zero result means the stream seen
+         * so far has a gap. Call it after {@link #poll} to cover the events just
+         * delivered.
+         *
+         * @return number of events this subscription will never see
+         */
+        public long takeMissed() {
+            long total = dropped.sum();
+            long missed = total - missedSeen;
+            missedSeen = total;
+            return missed;
+        }
+
+        /**
+         * Stops this subscription from holding back publishers.
+         */
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+
+    private final Event[] ring;
+    private final int mask;
+    /** Sequence stored in each slot once its event is fully written. */
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    /** Cached minimum subscription sequence; refreshed only when the ring looks full. */
+    private volatile long gatingCache = -1;
+
+    /**
+     * @param capacity ring size, rounded up to a power of two
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public DeviceEventBus(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Routes the device's state changes to this bus. A device publishes to at most one bus.
+     *
+     * @param device the device to observe
+     */
+    public void attach(Device device) {
+        device.attachEventBus(this);
+    }
+
+    /**
+     * Stops routing the device's state changes to this bus.
+     *
+     * @param device the device to stop observing
+     */
+    public void detach(Device device) {
+        device.detachEventBus(this);
+    }
+
+    /**
+     * Creates a subscription that sees events published from now on.
+     *
+     * @return the new subscription
+     */
+    public Subscription subscribe() {
+        Subscription s = new Subscription(claimed.get(), dropped.sum());
+        subscriptions.add(s);
+        return s;
+    }
+
+    /**
+     * @return number of events dropped because a subscription was a full ring behind
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return ring size
+     */
+    public int capacity() {
+        return ring.length;
+    }
+
+    boolean publish(Type type, Device device, long longValue, double doubleValue) {
+        long seq;
+        do {
+            long current = claimed.get();
+            seq = current + 1;
+            long wrapPoint = seq - ring.length;
+            if (wrapPoint > gatingCache) {
+                long min = minimumSequence(current);
+                gatingCache = min;
+                if (wrapPoint > min) {
+                    dropped.increment();
+                    return false;
+                }
+            }
+            if (claimed.compareAndSet(current, seq)) {
+                break;
+            }
+        } while (true);
+
+        int i = index(seq);
+        Event e = ring[i];
+        e.type = type;
+        e.device = device;
+        e.longValue = longValue;
+        e.doubleValue = doubleValue;
+        e.timestampMillis = System.currentTimeMillis();
+        published.set(i, seq);
+        return true;
+    }
+
+    private long minimumSequence(long fallback) {
+        long min = fallback;
+        for (Subscription s : subscriptions) {
+            min = Math.min(min, s.sequence.get());
+        }
+        return min;
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,451 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped journal of device state changes.
+ * <p>
+ * The file starts with a header {@code [magic:4][generation:8][flags:4][checkpoint:4]};
+ * the generation ties the journal to the snapshot it extends (see
+ * {@link FleetSnapshotStore}), the flags record whether events were lost, and
+ * checkpoint is where the records of a checkpoint in progress start. Each record is
+ * {@code [type:1][length:2][payload][crc32c:4]} with the payload
+ * {@code [idLength:2][id:UTF-8][value:8][text:UTF-8]}, where the value is a
+ * heartbeat second, a battery percent, the raw bits of a temperature, or the
+ * device type of a registration, and the text is the location of a registration
+ * or move (empty otherwise). A registration is followed by records holding the
+ * device's heartbeat, connection and battery or temperature. The checksum
+ * covers the type, length and payload. Unused space is zero; replay stops at the
+ * first zero type byte or the first record whose checksum does not match, so a
+ * record torn by a crash is never applied.
+ * </p>
+ *
+ * <p>The journal is only as good as its input. When {@link #drain} learns that the
+ * bus dropped events, the journal is marked incomplete and {@link #replay} refuses
+ * it until the next checkpoint starts a new generation.</p>
+ *
+ * <p>Appends go straight into the mapped region and survive a process crash;
+ * call {@link #sync()} to also survive an operating-system crash. The mapping
+ * doubles in size when it fills up.</p>
+ */
+public class DeviceJournal implements Closeable {
+    private static final int MAGIC = 0x464A4E33; // "FJN3"
+    private static final int GENERATION_AT = Integer.BYTES;
+    private static final int FLAGS_AT = GENERATION_AT + Long.BYTES;
+    private static final int CHECKPOINT_AT = FLAGS_AT + Integer.BYTES;
+    private static final int HEADER_BYTES = CHECKPOINT_AT + Integer.BYTES;
+    /** Events were lost since this generation started. */
+    private static final int INCOMPLETE = 1;
+    /** Events were lost since the pending checkpoint started. */
+    private static final int INCOMPLETE_SINCE_CHECKPOINT = 2;
+    /** Type and length before the payload, checksum after it. */
+    private static final int FRAME_BYTES = 1 + Short.BYTES + Integer.BYTES;
+    private static final DeviceEventBus.Type[] TYPES = DeviceEventBus.Type.values();
+
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private long generation;
+    private int flags;
+    /** Start of the records appended since a checkpoint began; 0 if none is pending. */
+    private int checkpointFrom;
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Opens (or creates) a journal. A new or unrecognized file is reset to generation 0.
+     *
+     * @param file the journal file
+     * @param initialBytes initial size of the mapping
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public DeviceJournal(Path file, int initialBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), Math.max(initialBytes, HEADER_BYTES + 64));
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (channel.size() >= HEADER_BYTES && map.getInt(0) == MAGIC) {
+            this.generation = map.getLong(GENERATION_AT);
+            this.flags = map.getInt(FLAGS_AT);
+            this.checkpointFrom = map.getInt(CHECKPOINT_AT);
+            skipToEnd();
+            if (checkpointFrom < HEADER_BYTES || checkpointFrom > map.position()) {
+                setCheckpointFrom(0);
+            }
+        } else {
+            reset(0);
+        }
+    }
+
+    /**
+     * @return the generation written in the header
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * @return {@code false} if events were dropped before reaching this generation
+     */
+    public synchronized boolean isComplete() {
+        return (flags & INCOMPLETE) == 0;
+    }
+
+    /**
+     * Discards all records and starts a new, complete generation.
+     *
+     * @param newGeneration generation to write in the header
+     */
+    public synchronized void reset(long newGeneration) {
+        restart(newGeneration, map.position(), 0);
+    }
+
+    /**
+     * Starts a checkpoint: records appended from now on are carried over into the
+     * next generation by {@link #finishCheckpoint(long)}, because the snapshot
+     * being written may or may not include their changes.
+     *
+     * @return the generation the checkpoint will create
+     */
+    synchronized long beginCheckpoint() {
+        setCheckpointFrom(map.position());
+        setFlags(flags & ~INCOMPLETE_SINCE_CHECKPOINT);
+        return generation + 1;
+    }
+
+    /**
+     * @return {@code true} if {@link #beginCheckpoint()} was called and not yet finished
+     */
+    synchronized boolean checkpointPending() {
+        return checkpointFrom != 0;
+    }
+
+    /**
+     * Finishes a checkpoint once its snapshot is in place: keeps only the records
+     * appended since {@link #beginCheckpoint()} and moves to {@code newGeneration}.
+     * The new generation is complete unless events were dropped during the checkpoint.
+     *
+     * @param newGeneration generation of the snapshot just written
+     * @throws IllegalStateException if no checkpoint is pending
+     */
+    synchronized void finishCheckpoint(long newGeneration) {
+        if (checkpointFrom == 0) {
+            throw new IllegalStateException("no checkpoint in progress");
+        }
+        int end = map.position();
+        byte[] tail = new byte[end - checkpointFrom];
+        map.get(checkpointFrom, tail);
+        restart(newGeneration, end, (flags & INCOMPLETE_SINCE_CHECKPOINT) != 0 ? INCOMPLETE : 0);
+        map.put(tail);
+    }
+
+    /**
+     * Appends one record.
+     *
+     * @param type kind of change
+     * @param deviceId the device id
+     * @param value heartbeat second, battery percent, or {@link Double#doubleToRawLongBits} of a temperature
+     * @throws IOException if the mapping has to grow and cannot
+     */
+    public synchronized void append(DeviceEventBus.Type type, String deviceId, long value) throws IOException {
+        append(type, deviceId, value, "");
+    }
+
+    /**
+     * Appends one record that carries a location, such as a registration or a move.
+     *
+     * @param type kind of change
+     * @param deviceId the device id
+     * @param value device type for {@link DeviceEventBus.Type#REGISTERED}; otherwise as above
+     * @param location the device's location
+     * @throws IOException if the mapping has to grow and cannot
+     */
+    public synchronized void append(DeviceEventBus.Type type, String deviceId, long value, String location)
+            throws IOException {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        byte[] text = location.getBytes(StandardCharsets.UTF_8);
+        int payload = Short.BYTES + id.length + Long.BYTES + text.length;
+        if (payload > 0xFFFF) {
+            throw new IllegalArgumentException("id and location too long");
+        }
+        int need = FRAME_BYTES + payload + 1; // + end marker
+        if (map.remaining() < need) {
+            grow(need);
+        }
+        int start = map.position();
+        map.put((byte) (type.ordinal() + 1));
+        map.putShort((short) payload);
+        map.putShort((short) id.length);
+        map.put(id);
+        map.putLong(value);
+        map.put(text);
+        map.putInt(checksum(start, map.position()));
+    }
+
+    /**
+     * Appends every event currently available on a subscription. If the bus has
+     * dropped any event since the last drain, the journal is marked incomplete;
+     * check {@link #isComplete()} and take a checkpoint to recover.
+     *
+     * @param subscription a subscription to the bus the fleet publishes to
+     * @param maxBatch most events to take per poll
+     * @return number of events appended
+     * @throws IOException if a record cannot be written
+     */
+    public synchronized int drain(DeviceEventBus.Subscription subscription, int maxBatch) throws IOException {
+        IOException[] failure = new IOException[1];
+        int total = 0;
+        int n;
+        do {
+            n = subscription.poll((e, seq, end) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    record(e);
+                } catch (IOException io) {
+                    failure[0] = io;
+                }
+            }, maxBatch);
+            total += n;
+        } while (n == maxBatch && failure[0] == null);
+        if (subscription.takeMissed() > 0) {
+            setFlags(flags | INCOMPLETE | INCOMPLETE_SINCE_CHECKPOINT);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return total;
+    }
+
+    /**
+     * Applies every record to {@code registry}: registrations add devices,
+     * removals drop them, moves go through {@link LocationIndex#move}, and other
+     * records update the matching device. Records for unknown ids, and a torn
+     * final record, are skipped.
+     *
+     * @param registry devices restored from the matching snapshot
+     * @return number of records applied
+     * @throws IllegalStateException if the journal is not {@link #isComplete() complete}
+     */
+    public synchronized int replay(DeviceRegistry registry) {
+        if (!isComplete()) {
+            throw new IllegalStateException("journal generation " + generation + " is missing dropped events");
+        }
+        int applied = 0;
+        int pos = HEADER_BYTES;
+        int end;
+        while ((end = recordEnd(pos)) > 0) {
+            int type = map.get(pos);
+            int idLength = map.getShort(pos + 1 + Short.BYTES) & 0xFFFF;
+            int idStart = pos + 1 + 2 * Short.BYTES;
+            byte[] id = new byte[idLength];
+            map.get(idStart, id);
+            long value = map.getLong(idStart + idLength);
+            int textStart = idStart + idLength + Long.BYTES;
+            byte[] text = new byte[end - Integer.BYTES - textStart];
+            map.get(textStart, text);
+            if (apply(registry, TYPES[type - 1], new String(id, StandardCharsets.UTF_8), value,
+                    new String(text, StandardCharsets.UTF_8))) {
+                applied++;
+            }
+            pos = end;
+        }
+        return applied;
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     */
+    public synchronized void sync() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    // --- helpers ---
+
+    /** Clears the records up to {@code end} and writes a fresh header. */
+    private void restart(long newGeneration, int end, int newFlags) {
+        for (int i = HEADER_BYTES; i < end; i++) {
+            map.put(i, (byte) 0);
+        }
+        map.putInt(0, MAGIC);
+        map.putLong(GENERATION_AT, newGeneration);
+        map.position(HEADER_BYTES);
+        generation = newGeneration;
+        setFlags(newFlags);
+        setCheckpointFrom(0);
+    }
+
+    private void setFlags(int newFlags) {
+        flags = newFlags;
+        map.putInt(FLAGS_AT, newFlags);
+    }
+
+    private void setCheckpointFrom(int pos) {
+        checkpointFrom = pos;
+        map.putInt(CHECKPOINT_AT, pos);
+    }
+
+    /** Writes the record(s) for one bus event; the device's current location is used. */
+    private void record(DeviceEventBus.Event e) throws IOException {
+        Device d = e.getDevice();
+        switch (e.getType()) {
+            case TEMPERATURE:
+                append(e.getType(), d.getId(), Double.doubleToRawLongBits(e.getDoubleValue()));
+                break;
+            case MOVED:
+                append(e.getType(), d.getId(), 0, d.getLocation());
+                break;
+            case REGISTERED:
+                byte deviceType = FleetSnapshotStore.typeOf(d);
+                if (deviceType < 0) {
+                    break; // not a kind of device the store can rebuild
+                }
+                append(e.getType(), d.getId(), deviceType, d.getLocation());
+                append(DeviceEventBus.Type.HEARTBEAT, d.getId(), d.getLastHeartbeatEpochSeconds());
+                append(d.isConnected() ? DeviceEventBus.Type.CONNECTED : DeviceEventBus.Type.DISCONNECTED,
+                        d.getId(), 0);
+                if (d instanceof Thermostat) {
+                    append(DeviceEventBus.Type.TEMPERATURE, d.getId(),
+                            Double.doubleToRawLongBits(((Thermostat) d).getTemperatureC()));
+                } else {
+                    append(DeviceEventBus.Type.BATTERY, d.getId(), ((BatteryPowered) d).getBatteryPercent());
+                }
+                break;
+            default:
+                append(e.getType(), d.getId(), e.getLongValue());
+                break;
+        }
+    }
+
+    private static boolean apply(DeviceRegistry registry, DeviceEventBus.Type type, String id,
+                                 long value, String location) {
+        if (type == DeviceEventBus.Type.REGISTERED) {
+            if (location.isEmpty() || registry.get(id) != null) {
+                return false;
+            }
+            Device d = FleetSnapshotStore.create((byte) value, id, location);
+            return d != null && registry.register(d);
+        }
+        Device d = registry.get(id);
+        if (d == null) {
+            return false;
+        }
+        switch (type) {
+            case UNREGISTERED:
+                return registry.unregister(id) != null;
+            case MOVED:
+                if (location.isEmpty()) {
+                    return false;
+                }
+                registry.locations().move(d, location);
+                return true;
+            default:
+                return apply(d, type, value);
+        }
+    }
+
+    private static boolean apply(Device d, DeviceEventBus.Type type, long value) {
+        switch (type) {
+            case CONNECTED:
+            case DISCONNECTED:
+                if (!(d instanceof Networked)) {
+                    return false;
+                }
+                if (type == DeviceEventBus.Type.CONNECTED) {
+                    ((Networked) d).connect();
+                } else {
+                    ((Networked) d).disconnect();
+                }
+                return true;
+            case HEARTBEAT:
+                d.heartbeat(value);
+                return true;
+            case BATTERY:
+                if (!(d instanceof BatteryPowered) || value < 0 || value > 100) {
+                    return false;
+                }
+                ((BatteryPowered) d).setBatteryPercent((int) value);
+                return true;
+            case TEMPERATURE:
+                if (!(d instanceof Thermostat)) {
+                    return false;
+                }
+                ((Thermostat) d).setTemperatureC(Double.longBitsToDouble(value));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the end of the record starting at {@code pos}, or -1 if there is no
+     * complete, intact record there.
+     */
+    private int recordEnd(int pos) {
+        int limit = map.capacity();
+        if (pos + FRAME_BYTES > limit) {
+            return -1;
+        }
+        int type = map.get(pos);
+        if (type <= 0 || type > TYPES.length) {
+            return -1;
+        }
+        int payload = map.getShort(pos + 1) & 0xFFFF;
+        int body = pos + 1 + Short.BYTES;
+        if (payload < Short.BYTES + Long.BYTES || body + payload + Integer.BYTES > limit
+                || Short.BYTES + (map.getShort(body) & 0xFFFF) + Long.BYTES > payload) {
+            return -1;
+        }
+        int end = body + payload;
+        if (map.getInt(end) != checksum(pos, end)) {
+            return -1;
+        }
+        return end + Integer.BYTES;
+    }
+
+    private int checksum(int from, int to) {
+        ByteBuffer range = map.duplicate();
+        range.position(from).limit(to);
+        crc.reset();
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    /** Positions the map after the last intact record and clears any torn tail. */
+    private void skipToEnd() {
+        int pos = HEADER_BYTES;
+        int end;
+        while ((end = recordEnd(pos)) > 0) {
+            pos = end;
+        }
+        int tornEnd = (int) Math.min(map.capacity(), (long) pos + FRAME_BYTES + 0xFFFF);
+        for (int i = pos; i < tornEnd; i++) {
+            map.put(i, (byte) 0);
+        }
+        map.position(pos);
+    }
+
+    private void grow(int need) throws IOException {
+        int pos = map.position();
+        long size = Math.max((long) map.capacity() * 2, (long) pos + need);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("journal full; take a snapshot to reset it");
+        }
+        map.force();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        map.position(pos);
+    }
+}
@@ -0,0 +1,257 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe registry of {@link Device} objects keyed by device id.
+ * <p>
+ * Devices are held in a {@link ConcurrentHashMap}, so lookups never lock and
+ * registrations only contend within a single hash bin. Two secondary indexes
+ * keep the devices that implement {@link Networked} and {@link BatteryPowered},
+ * which lets callers iterate one capability without {@code instanceof} checks
+ * over the whole fleet. Cameras and door locks are also tracked in a
+ * {@link LowBatteryIndex}, and every device in a {@link LocationIndex}. Index
+ * entries are added and removed while the device's map entry is locked, so a
+ * racing {@code register} and {@code unregister} of one id cannot leave stale
+ * index entries behind.
+ * </p>
+ *
+ * <p>Devices attached to a {@link DeviceEventBus} publish
+ * {@link DeviceEventBus.Type#REGISTERED} and {@link DeviceEventBus.Type#UNREGISTERED}
+ * events, so a {@link DeviceJournal} can record fleet membership changes.</p>
+ *
+ * <p>{@link #heartbeat(String)} is a lock-free map read followed by a volatile
+ * write on the device, so many ingest threads can report heartbeats at once.</p>
+ */
+public class DeviceRegistry {
+    /** Default initial capacity, sized for a large campus fleet. */
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final ConcurrentHashMap<String, Device> byId;
+    private final Set<Networked> networked;
+    private final Set<BatteryPowered> batteryPowered;
+    private final LowBatteryIndex lowBattery = new LowBatteryIndex();
+    private final LocationIndex locations;
+    /** Devices added by {@link #load} whose index entries are not built yet; {@code null} once built. */
+    private volatile Device[] unindexed;
+
+    /**
+     * Creates an empty registry with the default initial capacity.
+     */
+    public DeviceRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty registry pre-sized for the expected number of devices.
+     *
+     * @param expectedDevices expected fleet size; avoids rehashing while the fleet loads
+     * @throws IllegalArgumentException if {@code expectedDevices} is negative
+     */
+    public DeviceRegistry(int expectedDevices) {
+        if (expectedDevices < 0) {
+            throw new IllegalArgumentException("expectedDevices must be >= 0");
+        }
+        this.byId = new ConcurrentHashMap<>(expectedDevices);
+        this.networked = ConcurrentHashMap.newKeySet(expectedDevices);
+        this.batteryPowered = ConcurrentHashMap.newKeySet(expectedDevices);
+        this.locations = new LocationIndex(expectedDevices);
+    }
+
+    /**
+     * Adds a device to the registry and to each capability index it qualifies for.
+     *
+     * @param device the device to add
+     * @return {@code true} if added, {@code false} if a device with the same id is already registered
+     * @throws IllegalArgumentException if {@code device} is null
+     */
+    public boolean register(Device device) {
+        if (device == null) {
+            throw new IllegalArgumentException("device must not be null");
+        }
+        ensureIndexed();
+        boolean[] added = new boolean[1];
+        // Index inside compute so a concurrent unregister of the same id waits for us.
+        byId.compute(device.getId(), (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            index(device);
+            added[0] = true;
+            return device;
+        });
+        if (added[0]) {
+            device.publishEvent(DeviceEventBus.Type.REGISTERED, 0, 0);
+        }
+        return added[0];
+    }
+
+    /**
+     * Bulk-loads devices into an empty registry that no other thread can see yet,
+     * such as one being recovered. Only the id map is filled here. The capability,
+     * battery and location indexes are built in parallel the first time anything
+     * needs them, so lookups and heartbeats can start right away. Devices whose id
+     * is already present are skipped.
+     *
+     * @param devices the devices to add
+     * @return number of devices added
+     */
+    int load(Device[] devices) {
+        List<Device> fresh = new ArrayList<>(devices.length);
+        for (Device device : devices) {
+            if (byId.putIfAbsent(device.getId(), device) == null) {
+                fresh.add(device);
+            }
+        }
+        unindexed = fresh.toArray(new Device[0]);
+        return fresh.size();
+    }
+
+    /**
+     * Removes a device and its capability index entries.
+     *
+     * @param id the device id
+     * @return the removed device, or {@code null} if no device had that id
+     */
+    public Device unregister(String id) {
+        ensureIndexed();
+        Device[] removed = new Device[1];
+        byId.computeIfPresent(id, (k, device) -> {
+            unindex(device);
+            removed[0] = device;
+            return null;
+        });
+        if (removed[0] != null) {
+            removed[0].publishEvent(DeviceEventBus.Type.UNREGISTERED, 0, 0);
+        }
+        return removed[0];
+    }
+
+    /**
+     * @param id the device id
+     * @return the registered device, or {@code null} if none
+     */
+    public Device get(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Records a heartbeat for the device with the given id.
+     *
+     * @param id the device id
+     * @return {@code true} if the device was found, {@code false} otherwise
+     */
+    public boolean heartbeat(String id) {
+        Device device = byId.get(id);
+        if (device == null) {
+            return false;
+        }
+        device.heartbeat();
+        return true;
+    }
+
+    /**
+     * @return number of registered devices
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return live, unmodifiable view of all registered devices
+     */
+    public Collection<Device> devices() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * @return live, unmodifiable view of registered devices that implement {@link Networked}
+     */
+    public Set<Networked> networked() {
+        ensureIndexed();
+        return Collections.unmodifiableSet(networked);
+    }
+
+    /**
+     * @return live, unmodifiable view of registered devices that implement {@link BatteryPowered}
+     */
+    public Set<BatteryPowered> batteryPowered() {
+        ensureIndexed();
+        return Collections.unmodifiableSet(batteryPowered);
+    }
+
+    /**
+     * @return index of registered cameras and door locks by current battery percent
+     */
+    public LowBatteryIndex lowBattery() {
+        ensureIndexed();
+        return lowBattery;
+    }
+
+    /**
+     * @return index of registered devices by location; use {@link LocationIndex#move} to relocate one
+     */
+    public LocationIndex locations() {
+        ensureIndexed();
+        return locations;
+    }
+
+    // --- helpers ---
+
+    private void ensureIndexed() {
+        if (unindexed != null) {
+            buildIndexes();
+        }
+    }
+
+    /** Indexes the devices left by {@link #load}; they reflect each device's state at this point. */
+    private synchronized void buildIndexes() {
+        Device[] pending = unindexed;
+        if (pending == null) {
+            return;
+        }
+        Arrays.stream(pending).parallel().forEach(device -> {
+            if (device instanceof Networked) {
+                networked.add((Networked) device);
+            }
+            if (device instanceof BatteryPowered) {
+                batteryPowered.add((BatteryPowered) device);
+            }
+            if (BatteryState.of(device) != null) {
+                lowBattery.track(device);
+            }
+        });
+        locations.addAll(Arrays.asList(pending));
+        unindexed = null;
+    }
+
+    private void index(Device device) {
+        if (device instanceof Networked) {
+            networked.add((Networked) device);
+        }
+        if (device instanceof BatteryPowered) {
+            batteryPowered.add((BatteryPowered) device);
+        }
+        if (BatteryState.of(device) != null) {
+            lowBattery.track(device);
+        }
+        locations.add(device);
+    }
+
+    private void unindex(Device device) {
+        if (device instanceof Networked) {
+            networked.remove(device);
+        }
+        if (device instanceof BatteryPowered) {
+            batteryPowered.remove(device);
+        }
+        lowBattery.untrack(device);
+        locations.remove(device);
+    }
+}
@@ -1,7 +1,7 @@
 package org.howard.edu.lsp.midterm.question4;
 
 public class DoorLock extends Device implements Networked, BatteryPowered {
-    private int batteryPercent;
+    private final BatteryState battery = new BatteryState();
 
     public DoorLock(String id, String location, int initialBattery) {
         super(id, location);
@@ -14,18 +14,31 @@ public class DoorLock extends Device implements Networked, BatteryPowered {
     @Override public boolean isConnected() { return super.isConnected(); }
 
     // BatteryPowered
-    @Override public int getBatteryPercent() { return batteryPercent; }
+    @Override public int getBatteryPercent() { return battery.get(); }
     @Override public void setBatteryPercent(int percent) {
         if (percent < 0 || percent > 100) {
             throw new IllegalArgumentException("battery 0..100");
         }
-        this.batteryPercent = percent;
+        if (battery.set(this, percent)) {
+            markStatusDirty();
+        }
+        publishEvent(DeviceEventBus.Type.BATTERY, percent, 0);
     }
 
+    public BatteryHistory getBatteryHistory() { return battery.history(); }
+
+    BatteryState batteryState() { return battery; }
+
     // Status
     @Override public String getStatus() {
-        String connStatus = isConnected() ? "up" : "down";
-        return "DoorLock[id=" + getId() + ", loc=" + getLocation()
-                + ", conn=" + connStatus + ", batt=" + batteryPercent + "%]";
+        StringBuilder sb = new StringBuilder(64);
+        appendStatus(sb);
+        return sb.toString();
+    }
+
+    @Override public void appendStatus(StringBuilder sb) {
+        sb.append("DoorLock[id=").append(getId()).append(", loc=").append(getLocation())
+                .append(", conn=").append(isConnected() ? "up" : "down")
+                .append(", batt=").append(battery.get()).append("%]");
     }
 }
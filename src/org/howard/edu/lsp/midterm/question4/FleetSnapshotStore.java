@@ -0,0 +1,347 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Durable fleet state: periodic binary snapshots plus a {@link DeviceJournal}
+ * of changes made since the last snapshot.
+ * <p>
+ * A directory holds {@code fleet.snapshot} and {@code fleet.journal}.
+ * {@link #checkpoint(Collection)} marks the journal, writes a new snapshot under
+ * the next generation number without holding the journal, and then moves the
+ * journal to that generation, keeping the records appended while the snapshot
+ * was written. {@link #recover()} loads the snapshot and replays the journal when
+ * the two generations match; if a crash landed between writing the snapshot and
+ * moving the journal, it finishes the move first.
+ * </p>
+ *
+ * <p>Snapshot layout (big-endian): a header {@code [magic:4][version:2][generation:8]},
+ * an interned location table {@code [count:4]} followed by {@code [len:2][UTF-8]}
+ * entries, then {@code [count:4]} device records
+ * {@code [type:1][connected:1][heartbeat:8][location:4][idLen:2][id]} followed by
+ * a battery byte or a temperature double. Snapshots are written to a temporary
+ * file and atomically renamed into place.</p>
+ *
+ * <p>Keep the journal fed with {@link #drain(DeviceEventBus.Subscription, Collection, int)}.
+ * Attach devices to the bus before registering them, so that registrations,
+ * removals and moves made after the last checkpoint are journaled and recovered
+ * too. The bus drops events when a subscription falls a full ring behind; the
+ * journal then cannot rebuild the fleet, so {@code drain} takes a checkpoint to
+ * start a complete generation, and {@link #recover()} fails rather than restore
+ * an incomplete one.</p>
+ */
+public class FleetSnapshotStore implements Closeable {
+    private static final int MAGIC = 0x46534E50; // "FSNP"
+    private static final short VERSION = 1;
+    static final byte TYPE_CAMERA = 0;
+    static final byte TYPE_DOOR_LOCK = 1;
+    static final byte TYPE_THERMOSTAT = 2;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int JOURNAL_BYTES = 64 << 20;
+    /** Device record bytes before the id: type, connected, heartbeat, location. */
+    private static final int RECORD_FIXED_BYTES = 1 + 1 + Long.BYTES + Integer.BYTES;
+
+    private final Path snapshotFile;
+    private final DeviceJournal journal;
+    /** Serializes checkpoints; the journal itself stays available while one runs. */
+    private final Object checkpointLock = new Object();
+
+    /**
+     * Opens the store in {@code dir}, creating the directory and journal if needed.
+     *
+     * @param dir directory for the snapshot and journal files
+     * @throws IOException if the directory or journal cannot be opened
+     */
+    public FleetSnapshotStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.snapshotFile = dir.resolve("fleet.snapshot");
+        this.journal = new DeviceJournal(dir.resolve("fleet.journal"), JOURNAL_BYTES);
+    }
+
+    /**
+     * @return the journal that records changes since the last checkpoint
+     */
+    public DeviceJournal journal() {
+        return journal;
+    }
+
+    /**
+     * Appends the events available on {@code subscription} to the journal. If the
+     * bus dropped any of them, the journal can no longer rebuild the fleet, so a
+     * checkpoint of {@code fleet} is taken to start a complete generation.
+     *
+     * @param subscription the journal's subscription to the fleet's bus
+     * @param fleet the live devices, checkpointed if events were dropped
+     * @param maxBatch most events to take per poll
+     * @return number of events appended
+     * @throws IOException if a record or the checkpoint cannot be written
+     */
+    public int drain(DeviceEventBus.Subscription subscription, Collection<? extends Device> fleet, int maxBatch)
+            throws IOException {
+        int appended = journal.drain(subscription, maxBatch);
+        if (!journal.isComplete()) {
+            checkpoint(fleet);
+        }
+        return appended;
+    }
+
+    /**
+     * Writes a snapshot of {@code devices} and starts a fresh journal generation.
+     * Devices other than {@link Camera}, {@link DoorLock} and {@link Thermostat}
+     * are skipped. The journal keeps accepting records while the snapshot is
+     * written; those records move into the new generation.
+     *
+     * @param devices the fleet
+     * @return number of devices written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public int checkpoint(Collection<? extends Device> devices) throws IOException {
+        synchronized (checkpointLock) {
+            long generation = journal.beginCheckpoint();
+            int written = writeSnapshot(devices, generation);
+            journal.finishCheckpoint(generation);
+            journal.sync();
+            return written;
+        }
+    }
+
+    /**
+     * Rebuilds the fleet from the snapshot and the journal tail. Device records
+     * are decoded in parallel and bulk-loaded; the registry builds its indexes on
+     * first use.
+     *
+     * @return a registry holding the recovered devices; empty if there is no snapshot
+     * @throws IOException if the snapshot exists but cannot be read or is not a
+     *         snapshot, or if its journal is missing events dropped by the bus
+     */
+    public DeviceRegistry recover() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return new DeviceRegistry();
+        }
+        DeviceRegistry registry;
+        long generation;
+        try (FileChannel ch = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.remaining() < Integer.BYTES + Short.BYTES + Long.BYTES
+                    || in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw new IOException("not a fleet snapshot: " + snapshotFile);
+            }
+            generation = in.getLong();
+            String[] locations = new String[in.getInt()];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = readString(in);
+            }
+            int count = in.getInt();
+            int[] offsets = recordOffsets(in, count);
+            Device[] devices = new Device[count];
+            try {
+                IntStream.range(0, count).parallel().forEach(i -> devices[i] = readDevice(in, offsets[i], locations));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            registry = new DeviceRegistry(count);
+            registry.load(devices);
+        }
+        synchronized (checkpointLock) {
+            if (journal.generation() == generation - 1 && journal.checkpointPending()) {
+                journal.finishCheckpoint(generation); // crashed right after writing the snapshot
+            }
+            if (journal.generation() == generation) {
+                if (!journal.isComplete()) {
+                    throw new IOException("journal generation " + generation
+                            + " is missing events dropped by the event bus; the fleet cannot be restored");
+                }
+                journal.replay(registry);
+            }
+        }
+        return registry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    // --- helpers ---
+
+    private int writeSnapshot(Collection<? extends Device> devices, long generation) throws IOException {
+        List<Device> kept = new ArrayList<>(devices.size());
+        int[] locationRefs = new int[devices.size()];
+        Map<String, Integer> locationIds = new HashMap<>();
+        List<String> locations = new ArrayList<>();
+        for (Device d : devices) {
+            if (typeOf(d) >= 0 && kept.size() < locationRefs.length) {
+                // Capture the location once; the device may move while we write.
+                locationRefs[kept.size()] = locationIds.computeIfAbsent(d.getLocation(), k -> {
+                    locations.add(k);
+                    return locations.size() - 1;
+                });
+                kept.add(d);
+            }
+        }
+
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            out.putInt(MAGIC).putShort(VERSION).putLong(generation).putInt(locations.size());
+            for (String loc : locations) {
+                out = ensure(ch, out, 2 + loc.length() * 3);
+                writeString(out, loc);
+            }
+            out = ensure(ch, out, Integer.BYTES);
+            out.putInt(kept.size());
+            for (int i = 0; i < kept.size(); i++) {
+                Device d = kept.get(i);
+                String id = d.getId();
+                out = ensure(ch, out, 1 + 1 + 8 + 4 + 2 + id.length() * 3 + 8);
+                out.put(typeOf(d)).put((byte) (d.isConnected() ? 1 : 0))
+                        .putLong(d.getLastHeartbeatEpochSeconds())
+                        .putInt(locationRefs[i]);
+                writeString(out, id);
+                if (d instanceof Thermostat) {
+                    out.putDouble(((Thermostat) d).getTemperatureC());
+                } else {
+                    out.put((byte) ((BatteryPowered) d).getBatteryPercent());
+                }
+            }
+            out.flip();
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return kept.size();
+    }
+
+    /**
+     * Walks the variable-length device records once to find where each starts, so
+     * they can then be decoded in parallel.
+     */
+    private static int[] recordOffsets(ByteBuffer in, int count) throws IOException {
+        int[] offsets = new int[count];
+        int pos = in.position();
+        int limit = in.limit();
+        for (int i = 0; i < count; i++) {
+            if (pos + RECORD_FIXED_BYTES + Short.BYTES > limit) {
+                throw new IOException("corrupt snapshot: truncated at device " + i);
+            }
+            offsets[i] = pos;
+            byte type = in.get(pos);
+            pos += RECORD_FIXED_BYTES;
+            pos += Short.BYTES + (in.getShort(pos) & 0xFFFF);
+            pos += type == TYPE_THERMOSTAT ? Double.BYTES : 1;
+        }
+        if (pos > limit) {
+            throw new IOException("corrupt snapshot: truncated at device " + (count - 1));
+        }
+        return offsets;
+    }
+
+    /** Decodes the record at {@code pos} with absolute reads, so threads can share {@code in}. */
+    private static Device readDevice(ByteBuffer in, int pos, String[] locations) {
+        byte type = in.get(pos);
+        boolean connected = in.get(pos + 1) != 0;
+        long heartbeat = in.getLong(pos + 2);
+        int loc = in.getInt(pos + 10);
+        int idLength = in.getShort(pos + RECORD_FIXED_BYTES) & 0xFFFF;
+        int idStart = pos + RECORD_FIXED_BYTES + Short.BYTES;
+        byte[] idBytes = new byte[idLength];
+        in.get(idStart, idBytes);
+        String id = new String(idBytes, StandardCharsets.UTF_8);
+        int state = idStart + idLength;
+        if (loc < 0 || loc >= locations.length) {
+            throw new UncheckedIOException(new IOException("corrupt snapshot: bad location for " + id));
+        }
+        Device d;
+        switch (type) {
+            case TYPE_CAMERA:
+                d = new Camera(id, locations[loc], in.get(state));
+                break;
+            case TYPE_DOOR_LOCK:
+                d = new DoorLock(id, locations[loc], in.get(state));
+                break;
+            case TYPE_THERMOSTAT:
+                d = new Thermostat(id, locations[loc], in.getDouble(state));
+                break;
+            default:
+                throw new UncheckedIOException(new IOException("corrupt snapshot: unknown device type " + type));
+        }
+        d.heartbeat(heartbeat);
+        if (connected) {
+            ((Networked) d).connect();
+        }
+        return d;
+    }
+
+    /** @return the record type of a camera, door lock or thermostat; -1 for any other device */
+    static byte typeOf(Device d) {
+        if (d instanceof Camera) {
+            return TYPE_CAMERA;
+        }
+        if (d instanceof DoorLock) {
+            return TYPE_DOOR_LOCK;
+        }
+        return d instanceof Thermostat ? TYPE_THERMOSTAT : -1;
+    }
+
+    /**
+     * Creates a device of a record type with a zero battery or temperature; the
+     * caller restores the rest of its state.
+     *
+     * @return the device, or {@code null} for an unknown type
+     */
+    static Device create(byte type, String id, String location) {
+        switch (type) {
+            case TYPE_CAMERA:
+                return new Camera(id, location, 0);
+            case TYPE_DOOR_LOCK:
+                return new DoorLock(id, location, 0);
+            case TYPE_THERMOSTAT:
+                return new Thermostat(id, location, 0);
+            default:
+                return null;
+        }
+    }
+
+    /** Flushes {@code out} to the channel if fewer than {@code need} bytes remain. */
+    private static ByteBuffer ensure(FileChannel ch, ByteBuffer out, int need) throws IOException {
+        if (out.remaining() >= need) {
+            return out;
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            ch.write(out);
+        }
+        out.clear();
+        return out.capacity() >= need ? out : ByteBuffer.allocateDirect(need);
+    }
+
+    private static void writeString(ByteBuffer out, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) b.length).put(b);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] b = new byte[in.getShort() & 0xFFFF];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
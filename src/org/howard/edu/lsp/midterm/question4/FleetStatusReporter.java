@@ -0,0 +1,80 @@
+package org.howard.edu.lsp.midterm.question4;
+
+/**
+ * Builds fleet status text into one reusable buffer.
+ * <p>
+ * Devices append their status straight into the buffer through
+ * {@link Device#appendStatus(StringBuilder)}, so a report does not create a
+ * String per device. The returned text is only valid until the next call on
+ * the same reporter; copy it if it must outlive that call.
+ * </p>
+ *
+ * <p>{@link #reportChanged(Iterable)} only includes devices whose connection,
+ * battery or temperature changed since they were last reported. It relies on
+ * each device's dirty flag, which every report clears, so a fleet should have
+ * a single reporter that produces deltas.</p>
+ */
+public class FleetStatusReporter {
+    private final StringBuilder buffer;
+    private int lastCount;
+
+    /**
+     * Creates a reporter with a default initial buffer size.
+     */
+    public FleetStatusReporter() {
+        this(8192);
+    }
+
+    /**
+     * @param initialCapacity initial buffer size in characters; the buffer grows as needed and is then reused
+     */
+    public FleetStatusReporter(int initialCapacity) {
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * Reports every device, one status per line, and marks them all as reported.
+     *
+     * @param devices the fleet
+     * @return the report; valid until the next call on this reporter
+     */
+    public CharSequence report(Iterable<? extends Device> devices) {
+        buffer.setLength(0);
+        int n = 0;
+        for (Device d : devices) {
+            d.takeStatusDirty();
+            d.appendStatus(buffer);
+            buffer.append('\n');
+            n++;
+        }
+        lastCount = n;
+        return buffer;
+    }
+
+    /**
+     * Reports only devices that changed since they were last reported.
+     *
+     * @param devices the fleet
+     * @return the delta report; valid until the next call on this reporter
+     */
+    public CharSequence reportChanged(Iterable<? extends Device> devices) {
+        buffer.setLength(0);
+        int n = 0;
+        for (Device d : devices) {
+            if (d.takeStatusDirty()) {
+                d.appendStatus(buffer);
+                buffer.append('\n');
+                n++;
+            }
+        }
+        lastCount = n;
+        return buffer;
+    }
+
+    /**
+     * @return number of devices included in the most recent report
+     */
+    public int lastCount() {
+        return lastCount;
+    }
+}
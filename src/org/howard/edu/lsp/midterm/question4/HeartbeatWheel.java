@@ -0,0 +1,335 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel that detects devices whose heartbeats have stopped.
+ * <p>
+ * Every tracked device owns one timer whose deadline is
+ * {@code lastHeartbeat + timeoutSeconds}. A heartbeat unlinks the timer from its
+ * slot and links it into the slot for the new deadline, which is O(1). Each call
+ * to {@link #advanceTo(long)} moves the wheel forward one second at a time and
+ * only visits the slot that expires at that second (plus an occasional cascade
+ * from a coarser level), so the cost of a tick depends on how many devices time
+ * out, not on how many devices are tracked.
+ * </p>
+ *
+ * <p>The wheel has {@value #LEVELS} levels of {@value #WHEEL_SIZE} slots with a
+ * resolution of one second, covering deadlines up to about 194 days ahead.
+ * Timeouts shorter than {@value #WHEEL_SIZE} seconds stay on the finest level
+ * and never cascade.
+ * Timers are spread over independent stripes, each guarded by its own lock, so
+ * heartbeats from many ingest threads rarely contend.</p>
+ *
+ * <p>A tracked device re-arms its own timer on every {@link Device#heartbeat()},
+ * so heartbeats recorded through {@link DeviceRegistry#heartbeat(String)} or
+ * directly on the device count as well. A device tracks at most one wheel.
+ * When a timer expires the {@code onOffline} callback runs on the thread that
+ * called {@link #advanceTo(long)}, outside of any stripe lock. The timer stays
+ * disarmed until the device heartbeats again, so each outage is reported once.</p>
+ */
+public class HeartbeatWheel {
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 3;
+    /** Largest deadline distance (in ticks) the wheel can hold directly. */
+    private static final long MAX_SPAN = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long timeoutSeconds;
+    private final Consumer<Device> onOffline;
+    private final Stripe[] stripes;
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a wheel starting at the current wall-clock second.
+     *
+     * @param timeoutSeconds seconds without a heartbeat before a device is considered offline
+     * @param onOffline callback invoked once for each device that times out
+     */
+    public HeartbeatWheel(long timeoutSeconds, Consumer<Device> onOffline) {
+        this(timeoutSeconds, System.currentTimeMillis() / 1000,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8), onOffline);
+    }
+
+    /**
+     * Creates a wheel starting at an explicit second.
+     *
+     * @param timeoutSeconds seconds without a heartbeat before a device is considered offline
+     * @param startEpochSeconds the second the wheel is positioned at initially
+     * @param stripes number of independently locked stripes (rounded up to a power of two)
+     * @param onOffline callback invoked once for each device that times out
+     * @throws IllegalArgumentException if {@code timeoutSeconds} or {@code stripes} is not positive,
+     *         or {@code onOffline} is null
+     */
+    public HeartbeatWheel(long timeoutSeconds, long startEpochSeconds, int stripes, Consumer<Device> onOffline) {
+        if (timeoutSeconds <= 0) {
+            throw new IllegalArgumentException("timeoutSeconds must be > 0");
+        }
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be > 0");
+        }
+        if (onOffline == null) {
+            throw new IllegalArgumentException("onOffline must not be null");
+        }
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) {
+            n <<= 1;
+        }
+        this.timeoutSeconds = timeoutSeconds;
+        this.onOffline = onOffline;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe(startEpochSeconds);
+        }
+    }
+
+    /**
+     * Callback that marks {@link Networked} devices as disconnected and ignores others.
+     *
+     * @return the callback
+     */
+    public static Consumer<Device> disconnectNetworked() {
+        return d -> {
+            if (d instanceof Networked) {
+                ((Networked) d).disconnect();
+            }
+        };
+    }
+
+    /**
+     * Starts tracking a device, arming its timer from its last recorded heartbeat.
+     * Calling this for a device that is already tracked simply re-arms it.
+     *
+     * @param device the device to track
+     */
+    public void track(Device device) {
+        Timer t = timerFor(device);
+        device.attachHeartbeatWheel(this);
+        arm(t, device.getLastHeartbeatEpochSeconds() + timeoutSeconds);
+    }
+
+    /**
+     * Records a heartbeat at the current wall-clock second, tracking the device
+     * if it is not tracked yet.
+     *
+     * @param device the device that checked in
+     */
+    public void heartbeat(Device device) {
+        heartbeat(device, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Records a heartbeat at the given second, tracking the device if it is not
+     * tracked yet.
+     *
+     * @param device the device that checked in
+     * @param epochSeconds time of the heartbeat
+     */
+    public void heartbeat(Device device, long epochSeconds) {
+        device.heartbeat(epochSeconds); // re-arms the timer if tracked
+        if (!timers.containsKey(device.getId())) {
+            track(device);
+        }
+    }
+
+    /**
+     * Stops tracking a device.
+     *
+     * @param device the device to forget
+     * @return {@code true} if the device was tracked
+     */
+    public boolean untrack(Device device) {
+        Timer t = timers.remove(device.getId());
+        if (t == null) {
+            return false;
+        }
+        device.detachHeartbeatWheel(this);
+        Stripe s = t.stripe;
+        synchronized (s) {
+            s.unlink(t);
+        }
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to {@code epochSeconds}, firing the offline callback
+     * for every device whose deadline has passed. Moving backwards is a no-op.
+     *
+     * @param epochSeconds the current time
+     * @return number of devices reported offline
+     */
+    public int advanceTo(long epochSeconds) {
+        List<Timer> expired = new ArrayList<>();
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.advanceTo(epochSeconds, expired);
+            }
+        }
+        int fired = 0;
+        for (Timer t : expired) {
+            if (timers.get(t.device.getId()) != t) {
+                continue; // untracked after it was collected
+            }
+            long deadline = t.device.getLastHeartbeatEpochSeconds() + timeoutSeconds;
+            if (deadline <= epochSeconds) {
+                onOffline.accept(t.device);
+                fired++;
+            } else {
+                // A heartbeat landed since the timer was armed; keep watching the device.
+                arm(t, deadline);
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * @return number of tracked devices
+     */
+    public int size() {
+        return timers.size();
+    }
+
+    /** Called by {@link Device#heartbeat(long)} on the device's tracking wheel. */
+    void rearm(Device device) {
+        Timer t = timers.get(device.getId());
+        if (t != null) {
+            arm(t, device.getLastHeartbeatEpochSeconds() + timeoutSeconds);
+        }
+    }
+
+    private Timer timerFor(Device device) {
+        Timer t = timers.get(device.getId());
+        if (t == null) {
+            Stripe s = stripes[spread(device.getId().hashCode()) & (stripes.length - 1)];
+            t = timers.computeIfAbsent(device.getId(), k -> new Timer(device, s));
+        }
+        return t;
+    }
+
+    private static void arm(Timer t, long deadline) {
+        Stripe s = t.stripe;
+        synchronized (s) {
+            s.unlink(t);
+            t.deadline = deadline;
+            s.insert(t);
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** One device's timeout; a node in an intrusive doubly linked slot list. */
+    private static final class Timer {
+        final Device device;
+        final Stripe stripe;
+        long deadline;
+        Timer prev;
+        Timer next;
+
+        Timer(Device device, Stripe stripe) {
+            this.device = device;
+            this.stripe = stripe;
+        }
+
+        /** Sentinel constructor for slot heads. */
+        Timer() {
+            this.device = null;
+            this.stripe = null;
+            this.prev = this;
+            this.next = this;
+        }
+    }
+
+    /** An independent wheel; all methods must be called while holding its monitor. */
+    private static final class Stripe {
+        final Timer[][] slots = new Timer[LEVELS][WHEEL_SIZE];
+        long now;
+
+        Stripe(long start) {
+            this.now = start;
+            for (Timer[] level : slots) {
+                for (int i = 0; i < WHEEL_SIZE; i++) {
+                    level[i] = new Timer();
+                }
+            }
+        }
+
+        void insert(Timer t) {
+            long expires = Math.max(t.deadline, now + 1);
+            long delta = Math.min(expires - now, MAX_SPAN);
+            expires = now + delta;
+            int level = 0;
+            while (delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+                level++;
+            }
+            int idx = (int) ((expires >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Timer head = slots[level][idx];
+            t.prev = head.prev;
+            t.next = head;
+            head.prev.next = t;
+            head.prev = t;
+        }
+
+        void unlink(Timer t) {
+            if (t.next != null) {
+                t.prev.next = t.next;
+                t.next.prev = t.prev;
+                t.prev = null;
+                t.next = null;
+            }
+        }
+
+        void advanceTo(long target, List<Timer> expired) {
+            while (now < target) {
+                now++;
+                for (int level = 1; level < LEVELS; level++) {
+                    if ((now & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                        break;
+                    }
+                    cascade(slots[level][(int) ((now >>> (WHEEL_BITS * level)) & WHEEL_MASK)]);
+                }
+                Timer head = slots[0][(int) (now & WHEEL_MASK)];
+                Timer t = detach(head);
+                while (t != head) {
+                    Timer next = t.next;
+                    t.prev = null;
+                    t.next = null;
+                    if (t.deadline <= now) {
+                        expired.add(t);
+                    } else {
+                        insert(t); // deadline was clamped to MAX_SPAN
+                    }
+                    t = next;
+                }
+            }
+        }
+
+        private void cascade(Timer head) {
+            Timer t = detach(head);
+            while (t != head) {
+                Timer next = t.next;
+                t.prev = null;
+                t.next = null;
+                insert(t);
+                t = next;
+            }
+        }
+
+        /**
+         * Empties a slot and returns its first timer. The detached chain still
+         * ends at {@code head}, so timers re-inserted into the same slot while
+         * walking it are not visited twice.
+         */
+        private static Timer detach(Timer head) {
+            Timer first = head.next;
+            head.next = head;
+            head.prev = head;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the per-tick cost of {@link HeartbeatWheel} with a full fleet scan
+ * for growing fleet sizes.
+ * <p>
+ * Each simulated second a fixed number of devices heartbeat (the gateway rate),
+ * so the number of re-arms per tick is the same for every fleet size, and one
+ * device in a thousand goes silent. Heartbeats are not timed; only the offline
+ * check is. The wheel's tick time should stay flat while the scan grows
+ * linearly with the fleet.
+ * </p>
+ *
+ * <p>Run from the project root after compiling:
+ * {@code java -cp out org.howard.edu.lsp.midterm.question4.HeartbeatWheelBenchmark}</p>
+ */
+public class HeartbeatWheelBenchmark {
+    private static final long TIMEOUT_SECONDS = 90;
+    private static final long START = 1_700_000_000L;
+    private static final int HEARTBEATS_PER_TICK = 20_000;
+    /** Every n-th device never checks in again and eventually times out. */
+    private static final int SILENT_EVERY = 1_000;
+    private static final int TICKS = 600;
+
+    /** Keeps the JIT from discarding the scan. */
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        int[] fleetSizes = {10_000, 100_000, 1_000_000};
+        System.out.printf("%12s %16s %16s %10s%n", "devices", "wheel ns/tick", "scan ns/tick", "offline");
+        for (int n : fleetSizes) {
+            run(n); // warm-up
+            long[] r = run(n);
+            System.out.printf("%,12d %,16d %,16d %,10d%n", n, r[0], r[1], r[2]);
+        }
+    }
+
+    private static long[] run(int fleetSize) {
+        List<Device> fleet = new ArrayList<>(fleetSize);
+        int[] offline = new int[1];
+        HeartbeatWheel wheel = new HeartbeatWheel(TIMEOUT_SECONDS, START, 64, d -> offline[0]++);
+        for (int i = 0; i < fleetSize; i++) {
+            Device d = new Thermostat("TH-" + i, "Bench-" + (i % 100), 21.0);
+            d.heartbeat(START);
+            wheel.track(d);
+            fleet.add(d);
+        }
+
+        long wheelNanos = 0;
+        long scanNanos = 0;
+        long now = START;
+        int cursor = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            now++;
+            for (int i = 0; i < HEARTBEATS_PER_TICK; i++) {
+                if (cursor % SILENT_EVERY != 0) {
+                    wheel.heartbeat(fleet.get(cursor), now);
+                }
+                cursor = (cursor + 1) % fleetSize;
+            }
+
+            long t0 = System.nanoTime();
+            wheel.advanceTo(now);
+            long t1 = System.nanoTime();
+            sink = scanStale(fleet, now);
+            long t2 = System.nanoTime();
+            wheelNanos += t1 - t0;
+            scanNanos += t2 - t1;
+        }
+        return new long[] {wheelNanos / TICKS, scanNanos / TICKS, offline[0]};
+    }
+
+    /** The O(n) check the wheel replaces. */
+    private static int scanStale(List<Device> fleet, long now) {
+        int stale = 0;
+        for (Device d : fleet) {
+            if (d.getLastHeartbeatEpochSeconds() + TIMEOUT_SECONDS <= now) {
+                stale++;
+            }
+        }
+        return stale;
+    }
+}
@@ -0,0 +1,420 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of devices by {@link Device#getLocation() location} that answers prefix
+ * queries such as "all devices in DormA" or "connected cameras in Library-*".
+ * <p>
+ * Locations are interned and kept in a sorted map, so a prefix query visits only
+ * the locations that start with the prefix and the devices stored under them.
+ * Each location keeps running counts of its devices, and of its connected
+ * devices, per type. They are updated as devices are added, removed or
+ * {@link #move(Device, String) moved} and whenever an indexed device connects or
+ * disconnects, so {@link #count(String)} and {@link #counts(String)} never visit
+ * individual devices. {@link Device#setLocation(String)} on an indexed device
+ * refiles it here as well.
+ * </p>
+ *
+ * <p>Prefixes are plain string prefixes: {@code "DormA"} also matches
+ * {@code "DormAB-1F"}, while {@code "DormA-"} does not. A trailing {@code '*'}
+ * is ignored, so {@code "Library-*"} and {@code "Library-"} are equivalent.</p>
+ *
+ * <p>Queries never lock. Adds, removals and moves of one device are serialized on
+ * its id, and updates to one location lock only that location, so registrations
+ * at different locations proceed in parallel. A device can be indexed by at most
+ * one index at a time.</p>
+ */
+public class LocationIndex {
+    private final ConcurrentSkipListMap<String, Node> byLocation = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, String> interned = new ConcurrentHashMap<>();
+    /** Where each indexed device (by id) is currently filed. */
+    private final ConcurrentHashMap<String, String> placement;
+
+    /**
+     * Creates an empty index.
+     */
+    public LocationIndex() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty index pre-sized for the expected number of devices.
+     *
+     * @param expectedDevices expected number of indexed devices
+     */
+    public LocationIndex(int expectedDevices) {
+        this.placement = new ConcurrentHashMap<>(expectedDevices);
+    }
+
+    /**
+     * Per-prefix totals returned by {@link #counts(String)}.
+     */
+    public static final class Counts {
+        private final Map<Class<? extends Device>, int[]> byType;
+
+        Counts(Map<Class<? extends Device>, int[]> byType) {
+            this.byType = byType;
+        }
+
+        /**
+         * @return number of matching devices
+         */
+        public int total() {
+            int n = 0;
+            for (int[] c : byType.values()) {
+                n += c[0];
+            }
+            return n;
+        }
+
+        /**
+         * @param type a device class such as {@code Camera.class}
+         * @return number of matching devices of exactly that class
+         */
+        public int total(Class<? extends Device> type) {
+            int[] c = byType.get(type);
+            return c == null ? 0 : c[0];
+        }
+
+        /**
+         * @return number of matching devices that are connected
+         */
+        public int connected() {
+            int n = 0;
+            for (int[] c : byType.values()) {
+                n += c[1];
+            }
+            return n;
+        }
+
+        /**
+         * @param type a device class such as {@code Camera.class}
+         * @return number of matching, connected devices of exactly that class
+         */
+        public int connected(Class<? extends Device> type) {
+            int[] c = byType.get(type);
+            return c == null ? 0 : c[1];
+        }
+
+        /**
+         * @return the device classes that appear under the prefix
+         */
+        public Set<Class<? extends Device>> types() {
+            return Collections.unmodifiableSet(byType.keySet());
+        }
+    }
+
+    /**
+     * Adds a device under its current location. The device's location is
+     * replaced by the interned instance.
+     *
+     * @param device the device to index
+     * @return {@code false} if a device with the same id is already indexed
+     */
+    public boolean add(Device device) {
+        boolean[] added = new boolean[1];
+        placement.compute(device.getId(), (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            // Attach before reading the location, so a concurrent setLocation either
+            // is seen here or sees this index and refiles the device.
+            device.attachLocationIndex(this);
+            String loc = intern(device.getLocation());
+            device.relocate(loc);
+            file(device, loc);
+            added[0] = true;
+            return loc;
+        });
+        return added[0];
+    }
+
+    /**
+     * Adds many devices that are not indexed yet, building each location's entry
+     * in one step instead of locking it once per device. Locations are handled in
+     * parallel. Devices whose location already has an entry are added one by one.
+     *
+     * @param devices devices not yet in this index
+     */
+    void addAll(Collection<? extends Device> devices) {
+        Map<String, List<Device>> byLoc = new HashMap<>();
+        for (Device d : devices) {
+            byLoc.computeIfAbsent(d.getLocation(), k -> new ArrayList<>()).add(d);
+        }
+        byLoc.entrySet().parallelStream().forEach(e -> {
+            String loc = intern(e.getKey());
+            List<Device> group = e.getValue();
+            Node node = new Node(group.size());
+            synchronized (node) {
+                if (byLocation.putIfAbsent(loc, node) != null) {
+                    group.forEach(this::add);
+                    return;
+                }
+                Class<?> lastType = null;
+                TypeCount counts = null;
+                for (Device d : group) {
+                    if (placement.putIfAbsent(d.getId(), loc) != null) {
+                        continue;
+                    }
+                    d.attachLocationIndex(this);
+                    d.relocate(loc);
+                    if (d.getClass() != lastType) {
+                        lastType = d.getClass();
+                        counts = node.typeCounts.computeIfAbsent(d.getClass(), k -> new TypeCount());
+                    }
+                    counts.total++;
+                    boolean connected = d.isConnected();
+                    node.devices.put(d, connected);
+                    if (connected) {
+                        counts.connected++;
+                    }
+                }
+                node.size = node.devices.size();
+                if (node.size == 0) {
+                    node.retired = true;
+                    byLocation.remove(loc, node);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes a device from the index.
+     *
+     * @param device the device to remove
+     * @return {@code true} if the device was indexed
+     */
+    public boolean remove(Device device) {
+        boolean[] removed = new boolean[1];
+        placement.computeIfPresent(device.getId(), (id, loc) -> {
+            unfile(device, loc);
+            device.detachLocationIndex(this);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Moves a device to a new location, updating both the device and the index.
+     * A device that is not yet indexed is added.
+     *
+     * @param device the device to move
+     * @param newLocation its new location
+     * @throws IllegalArgumentException if {@code newLocation} is null or empty
+     */
+    public void move(Device device, String newLocation) {
+        if (newLocation == null || newLocation.isEmpty()) {
+            throw new IllegalArgumentException("Invalid id or location");
+        }
+        String loc = intern(newLocation);
+        placement.compute(device.getId(), (id, old) -> {
+            if (old != null) {
+                unfile(device, old);
+            }
+            device.attachLocationIndex(this);
+            device.relocate(loc);
+            file(device, loc);
+            return loc;
+        });
+    }
+
+    /**
+     * Called by {@link Device#setLocation(String)} on a device attached to this
+     * index: refiles it under {@code newLocation}, or only sets the location if the
+     * device has been removed meanwhile.
+     */
+    void relocate(Device device, String newLocation) {
+        placement.compute(device.getId(), (id, old) -> {
+            if (old == null) {
+                device.relocate(newLocation);
+                return null;
+            }
+            String loc = intern(newLocation);
+            if (!loc.equals(old)) {
+                unfile(device, old);
+                device.relocate(loc);
+                file(device, loc);
+            } else {
+                device.relocate(loc);
+            }
+            return loc;
+        });
+    }
+
+    /**
+     * @param prefix location prefix
+     * @return all devices whose location starts with {@code prefix}
+     */
+    public List<Device> find(String prefix) {
+        return find(prefix, Device.class, false);
+    }
+
+    /**
+     * @param prefix location prefix
+     * @param type the kind of device wanted, e.g. {@code Camera.class} or {@code Networked.class}
+     * @param connectedOnly whether to keep only connected devices
+     * @return matching devices that are instances of {@code type}
+     */
+    public <T> List<T> find(String prefix, Class<T> type, boolean connectedOnly) {
+        List<T> out = new ArrayList<>();
+        for (Node node : range(prefix).values()) {
+            for (Device d : node.devices.keySet()) {
+                if (type.isInstance(d) && (!connectedOnly || d.isConnected())) {
+                    out.add(type.cast(d));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param prefix location prefix
+     * @return number of devices whose location starts with {@code prefix}; does not visit devices
+     */
+    public int count(String prefix) {
+        int n = 0;
+        for (Node node : range(prefix).values()) {
+            n += node.size;
+        }
+        return n;
+    }
+
+    /**
+     * @param prefix location prefix
+     * @return device counts by type and connection state under {@code prefix}
+     */
+    public Counts counts(String prefix) {
+        Map<Class<? extends Device>, int[]> byType = new HashMap<>();
+        for (Node node : range(prefix).values()) {
+            for (Map.Entry<Class<? extends Device>, TypeCount> e : node.typeCounts.entrySet()) {
+                int[] c = byType.computeIfAbsent(e.getKey(), k -> new int[2]);
+                c[0] += e.getValue().total;
+                c[1] += e.getValue().connected;
+            }
+        }
+        return new Counts(byType);
+    }
+
+    /**
+     * @param prefix location prefix
+     * @return the distinct indexed locations that start with {@code prefix}, in sorted order
+     */
+    public Collection<String> locations(String prefix) {
+        return Collections.unmodifiableSet(range(prefix).keySet());
+    }
+
+    // --- helpers ---
+
+    private NavigableMap<String, Node> range(String prefix) {
+        String p = prefix.endsWith("*") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        if (p.isEmpty()) {
+            return byLocation;
+        }
+        return byLocation.subMap(p, true, p + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Called by {@link Device#setConnected(boolean)} when an indexed device's
+     * connection state changes. Re-reads the state under the location's lock, so
+     * calls racing with each other or with a move still leave the counts exact.
+     */
+    void connectionChanged(Device device) {
+        String loc = placement.get(device.getId());
+        Node node = loc == null ? null : byLocation.get(loc);
+        if (node == null) {
+            return;
+        }
+        synchronized (node) {
+            if (node.devices.containsKey(device)) {
+                syncConnected(node, device);
+            }
+        }
+    }
+
+    private String intern(String loc) {
+        String existing = interned.putIfAbsent(loc, loc);
+        return existing != null ? existing : loc;
+    }
+
+    private void file(Device device, String loc) {
+        while (true) {
+            Node node = byLocation.computeIfAbsent(loc, k -> new Node());
+            synchronized (node) {
+                if (node.retired) {
+                    continue; // emptied and removed after we looked it up
+                }
+                node.devices.put(device, Boolean.FALSE);
+                node.size++;
+                node.typeCounts.computeIfAbsent(device.getClass(), k -> new TypeCount()).total++;
+                syncConnected(node, device);
+                return;
+            }
+        }
+    }
+
+    private void unfile(Device device, String loc) {
+        Node node = byLocation.get(loc);
+        if (node == null) {
+            return;
+        }
+        synchronized (node) {
+            Boolean countedConnected = node.devices.remove(device);
+            if (countedConnected == null) {
+                return;
+            }
+            TypeCount c = node.typeCounts.get(device.getClass());
+            c.total--;
+            if (countedConnected) {
+                c.connected--;
+            }
+            if (--node.size == 0) {
+                node.retired = true;
+                byLocation.remove(loc, node);
+            }
+        }
+    }
+
+    /** Brings the node's connected count in line with the device; caller holds the node's lock. */
+    private static void syncConnected(Node node, Device device) {
+        boolean connected = device.isConnected();
+        if (connected != node.devices.get(device)) {
+            node.typeCounts.get(device.getClass()).connected += connected ? 1 : -1;
+            node.devices.put(device, connected);
+        }
+    }
+
+    /** Devices filed under one exact location; counters change only under the node's lock. */
+    private static final class Node {
+        /** Each device, mapped to whether it is counted as connected. */
+        final ConcurrentHashMap<Device, Boolean> devices;
+        final ConcurrentHashMap<Class<? extends Device>, TypeCount> typeCounts = new ConcurrentHashMap<>();
+        volatile int size;
+        /** Set once the node is emptied and unmapped; a retired node is never reused. */
+        boolean retired;
+
+        Node() {
+            this(16);
+        }
+
+        Node(int expectedDevices) {
+            this.devices = new ConcurrentHashMap<>(expectedDevices);
+        }
+    }
+
+    /** Devices of one class under one location. */
+    private static final class TypeCount {
+        volatile int total;
+        volatile int connected;
+    }
+}
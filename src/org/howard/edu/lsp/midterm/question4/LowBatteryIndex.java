@@ -0,0 +1,108 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of battery-powered devices bucketed by their current percent (0..100).
+ * <p>
+ * Tracked devices move between buckets on every
+ * {@link BatteryPowered#setBatteryPercent(int)}, so a query such as
+ * "everything under 15%" only visits the low buckets and costs time
+ * proportional to the number of matches rather than a fleet scan.
+ * </p>
+ *
+ * <p>A device can be tracked by at most one index at a time; tracking it again
+ * moves it. Queries never block battery updates.</p>
+ */
+public class LowBatteryIndex {
+    private final List<Set<BatteryPowered>> buckets = new ArrayList<>(101);
+
+    /**
+     * Creates an empty index.
+     */
+    public LowBatteryIndex() {
+        for (int i = 0; i <= 100; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Starts tracking a device.
+     *
+     * @param device a {@link Camera} or {@link DoorLock}
+     * @throws IllegalArgumentException if the device does not report battery changes
+     */
+    public void track(Device device) {
+        BatteryState state = BatteryState.of(device);
+        if (state == null) {
+            throw new IllegalArgumentException("device does not report battery changes: " + device.getId());
+        }
+        state.attach(this, (BatteryPowered) device);
+    }
+
+    /**
+     * Stops tracking a device. Does nothing if the device is not tracked here.
+     *
+     * @param device the device to forget
+     */
+    public void untrack(Device device) {
+        BatteryState state = BatteryState.of(device);
+        if (state != null) {
+            state.detach(this, (BatteryPowered) device);
+        }
+    }
+
+    /**
+     * @param percent exclusive upper bound, 0..101
+     * @return devices whose battery is below {@code percent}, lowest first
+     */
+    public List<BatteryPowered> below(int percent) {
+        List<BatteryPowered> out = new ArrayList<>();
+        for (int p = 0; p < Math.min(percent, 101); p++) {
+            out.addAll(buckets.get(p));
+        }
+        return out;
+    }
+
+    /**
+     * @param percent exclusive upper bound, 0..101
+     * @return number of devices whose battery is below {@code percent}
+     */
+    public int countBelow(int percent) {
+        int n = 0;
+        for (int p = 0; p < Math.min(percent, 101); p++) {
+            n += buckets.get(p).size();
+        }
+        return n;
+    }
+
+    /**
+     * @param percent a battery level, 0..100
+     * @return live, unmodifiable view of devices currently at exactly that level
+     * @throws IllegalArgumentException if {@code percent} is outside 0..100
+     */
+    public Set<BatteryPowered> at(int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("battery 0..100");
+        }
+        return Collections.unmodifiableSet(buckets.get(percent));
+    }
+
+    void add(BatteryPowered device, int percent) {
+        buckets.get(percent).add(device);
+    }
+
+    void remove(BatteryPowered device, int percent) {
+        buckets.get(percent).remove(device);
+    }
+
+    void move(BatteryPowered device, int from, int to) {
+        // Add first so a concurrent query may briefly see the device twice, never zero times.
+        buckets.get(to).add(device);
+        buckets.get(from).remove(device);
+    }
+}
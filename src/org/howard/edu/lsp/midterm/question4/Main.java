@@ -1,9 +1,12 @@
 package org.howard.edu.lsp.midterm.question4;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class Main {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
     Device lock   = new DoorLock("DL-101", "DormA-1F", 85);
     Device thermo = new Thermostat("TH-202", "Library-2F", 21.5);
     Device cam    = new Camera("CA-303", "Quad-North", 72);
@@ -61,5 +64,26 @@ public class Main {
     for (Device d : devices) {
       System.out.println(d.getStatus());
     }
+
+    // === Journal recovery when the event bus drops events ===
+    System.out.println("\n== Recovery after dropped events ==");
+    Path dir = Files.createTempDirectory("fleet");
+    DeviceEventBus bus = new DeviceEventBus(1024);
+    DeviceEventBus.Subscription journalFeed = bus.subscribe();
+    DeviceRegistry fleet = new DeviceRegistry();
+    try (FleetSnapshotStore store = new FleetSnapshotStore(dir)) {
+      store.checkpoint(fleet.devices());
+      for (int i = 0; i < 2000; i++) {
+        Camera c = new Camera("CA-" + i, "Quad-" + (i % 4), 50);
+        bus.attach(c);
+        fleet.register(c);
+        c.connect();
+      }
+      store.drain(journalFeed, fleet.devices(), 256);
+      System.out.println("events dropped by the bus = " + bus.dropped());
+    }
+    try (FleetSnapshotStore store = new FleetSnapshotStore(dir)) {
+      System.out.println("devices recovered = " + store.recover().size() + " of " + fleet.size());
+    }
   }
 }
@@ -0,0 +1,31 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.io.IOException;
+
+/**
+ * The network operations behind {@link Networked#connect()} and
+ * {@link Networked#disconnect()}.
+ * <p>
+ * Implementations perform the real (and possibly slow) work of opening or
+ * closing a device session and may block the calling thread while doing so.
+ * {@link ConnectionManager} calls them from its executor and only flips the
+ * device's connected flag once the call returns normally.
+ * </p>
+ */
+public interface NetworkTransport {
+    /**
+     * Opens a session to the device.
+     *
+     * @param device the device to connect
+     * @throws IOException if the connection attempt fails
+     */
+    void open(Device device) throws IOException;
+
+    /**
+     * Closes the session to the device.
+     *
+     * @param device the device to disconnect
+     * @throws IOException if the disconnect attempt fails
+     */
+    void close(Device device) throws IOException;
+}
@@ -0,0 +1,526 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, struct-of-arrays store for device state.
+ * <p>
+ * Instead of one heap object per device, each field lives in its own primitive
+ * array indexed by a dense device number:
+ * <ul>
+ *   <li>{@code long} last heartbeat (epoch seconds)</li>
+ *   <li>{@code byte} flags: device type, the connected bit and the status-dirty bit</li>
+ *   <li>{@code byte} battery percent (cameras and door locks)</li>
+ *   <li>{@code double} temperature in °C (thermostats)</li>
+ *   <li>{@code int} reference into an interned location table</li>
+ *   <li>ids packed as UTF-8 into one shared byte array, found through an
+ *       open-addressing hash table of {@code int}s</li>
+ * </ul>
+ * A device with a short id costs about 50 bytes, and full-fleet scans such
+ * as {@link #countConnected()} walk contiguous arrays.
+ * </p>
+ *
+ * <p>{@link #view(int)} returns a lightweight {@link Device} backed by the arrays,
+ * so existing code that uses {@link Device#getStatus()}, {@link Networked} and
+ * {@link BatteryPowered} keeps working. Views hold no state of their own and are
+ * meant to be created on demand and discarded. The status-dirty bit used by
+ * {@link FleetStatusReporter#reportChanged(Iterable)} lives in the store too, so delta
+ * reports over fresh views only list devices whose connection, battery or
+ * temperature changed.</p>
+ *
+ * <p>This class is not thread-safe; callers sharing a store across threads must
+ * synchronize externally.</p>
+ */
+public class PackedDeviceStore {
+    private static final byte TYPE_CAMERA = 0;
+    private static final byte TYPE_DOOR_LOCK = 1;
+    private static final byte TYPE_THERMOSTAT = 2;
+    private static final byte TYPE_MASK = 0x03;
+    private static final byte CONNECTED = 0x04;
+    private static final byte DIRTY = 0x08;
+    private static final int MAX_ID_BYTES = 255;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int size;
+    private long[] heartbeat;
+    private byte[] flags;
+    private byte[] battery;
+    private double[] temperature;
+    private int[] location;
+    private int[] idOffset;
+    private byte[] idLength;
+    private byte[] idBytes;
+    private int idBytesUsed;
+    /** Open-addressing table of device index + 1; 0 marks an empty slot. */
+    private int[] idTable;
+
+    private final List<String> locations = new ArrayList<>();
+    private final Map<String, Integer> locationIds = new HashMap<>();
+
+    /**
+     * Creates an empty store with a small default capacity.
+     */
+    public PackedDeviceStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store pre-sized for the expected number of devices.
+     *
+     * @param expectedDevices expected fleet size
+     * @throws IllegalArgumentException if {@code expectedDevices} is negative
+     */
+    public PackedDeviceStore(int expectedDevices) {
+        if (expectedDevices < 0) {
+            throw new IllegalArgumentException("expectedDevices must be >= 0");
+        }
+        int cap = Math.max(expectedDevices, 16);
+        heartbeat = new long[cap];
+        flags = new byte[cap];
+        battery = new byte[cap];
+        temperature = new double[cap];
+        location = new int[cap];
+        idOffset = new int[cap];
+        idLength = new byte[cap];
+        idBytes = new byte[cap * 8];
+        idTable = new int[tableSizeFor(cap)];
+    }
+
+    /**
+     * Adds a camera.
+     *
+     * @return the new device's index
+     * @throws IllegalArgumentException if the id or location is invalid, the id is
+     *         already present, or the battery is outside 0..100
+     */
+    public int addCamera(String id, String location, int initialBattery) {
+        checkBattery(initialBattery);
+        int i = add(id, location, TYPE_CAMERA);
+        battery[i] = (byte) initialBattery;
+        return i;
+    }
+
+    /**
+     * Adds a door lock.
+     *
+     * @return the new device's index
+     * @throws IllegalArgumentException if the id or location is invalid, the id is
+     *         already present, or the battery is outside 0..100
+     */
+    public int addDoorLock(String id, String location, int initialBattery) {
+        checkBattery(initialBattery);
+        int i = add(id, location, TYPE_DOOR_LOCK);
+        battery[i] = (byte) initialBattery;
+        return i;
+    }
+
+    /**
+     * Adds a thermostat.
+     *
+     * @return the new device's index
+     * @throws IllegalArgumentException if the id or location is invalid or the id is already present
+     */
+    public int addThermostat(String id, String location, double initialTempC) {
+        int i = add(id, location, TYPE_THERMOSTAT);
+        temperature[i] = initialTempC;
+        return i;
+    }
+
+    /**
+     * @return number of devices in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up a device index by id.
+     *
+     * @param id the device id
+     * @return the index, or -1 if no device has that id
+     */
+    public int indexOf(String id) {
+        if (id == null) {
+            return -1;
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int mask = idTable.length - 1;
+        for (int slot = hash(key, 0, key.length) & mask; ; slot = (slot + 1) & mask) {
+            int entry = idTable[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(entry - 1, key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * @return the id of the device at {@code index}
+     */
+    public String idAt(int index) {
+        checkIndex(index);
+        return new String(idBytes, idOffset[index], idLength[index] & 0xFF, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the interned location of the device at {@code index}
+     */
+    public String locationAt(int index) {
+        checkIndex(index);
+        return locations.get(location[index]);
+    }
+
+    /**
+     * Moves the device at {@code index} to another location.
+     *
+     * @throws IllegalArgumentException if {@code location} is null or empty
+     */
+    public void setLocation(int index, String loc) {
+        checkIndex(index);
+        if (loc == null || loc.isEmpty()) {
+            throw new IllegalArgumentException("Invalid id or location");
+        }
+        location[index] = intern(loc);
+    }
+
+    /**
+     * @return last heartbeat (epoch seconds) of the device at {@code index}
+     */
+    public long heartbeatAt(int index) {
+        checkIndex(index);
+        return heartbeat[index];
+    }
+
+    /**
+     * Records a heartbeat for the device at {@code index}.
+     */
+    public void heartbeat(int index, long epochSeconds) {
+        checkIndex(index);
+        heartbeat[index] = epochSeconds;
+    }
+
+    /**
+     * @return whether the device at {@code index} is connected
+     */
+    public boolean isConnected(int index) {
+        checkIndex(index);
+        return (flags[index] & CONNECTED) != 0;
+    }
+
+    /**
+     * Sets the connected bit of the device at {@code index}.
+     */
+    public void setConnected(int index, boolean connected) {
+        checkIndex(index);
+        if (((flags[index] & CONNECTED) != 0) != connected) {
+            flags[index] = (byte) ((flags[index] ^ CONNECTED) | DIRTY);
+        }
+    }
+
+    /**
+     * @return battery percent of the device at {@code index}
+     * @throws IllegalArgumentException if the device is not battery powered
+     */
+    public int batteryAt(int index) {
+        checkBatteryPowered(index);
+        return battery[index];
+    }
+
+    /**
+     * Sets the battery percent of the device at {@code index}.
+     *
+     * @throws IllegalArgumentException if the device is not battery powered or
+     *         {@code percent} is outside 0..100
+     */
+    public void setBattery(int index, int percent) {
+        checkBatteryPowered(index);
+        checkBattery(percent);
+        if (battery[index] != percent) {
+            battery[index] = (byte) percent;
+            flags[index] |= DIRTY;
+        }
+    }
+
+    /**
+     * @return temperature in °C of the thermostat at {@code index}
+     * @throws IllegalArgumentException if the device is not a thermostat
+     */
+    public double temperatureAt(int index) {
+        checkThermostat(index);
+        return temperature[index];
+    }
+
+    /**
+     * Sets the temperature of the thermostat at {@code index}.
+     *
+     * @throws IllegalArgumentException if the device is not a thermostat
+     */
+    public void setTemperature(int index, double temperatureC) {
+        checkThermostat(index);
+        if (Double.compare(temperature[index], temperatureC) != 0) {
+            temperature[index] = temperatureC;
+            flags[index] |= DIRTY;
+        }
+    }
+
+    /**
+     * Returns a {@link Device} view over the device at {@code index}. Cameras and
+     * door locks are {@link Networked} and {@link BatteryPowered}; thermostats are
+     * {@link Networked}. Reads and writes through the view go to this store.
+     *
+     * @param index the device index
+     * @return a new view object
+     */
+    public Device view(int index) {
+        checkIndex(index);
+        switch (flags[index] & TYPE_MASK) {
+            case TYPE_CAMERA:
+                return new BatteryView(index, "Camera");
+            case TYPE_DOOR_LOCK:
+                return new BatteryView(index, "DoorLock");
+            default:
+                return new ThermostatView(index);
+        }
+    }
+
+    /**
+     * @return number of connected devices
+     */
+    public int countConnected() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n += (flags[i] & CONNECTED) >>> 2;
+        }
+        return n;
+    }
+
+    /**
+     * @param cutoffEpochSeconds devices whose last heartbeat is before this time are stale
+     * @return number of stale devices
+     */
+    public int countStale(long cutoffEpochSeconds) {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (heartbeat[i] < cutoffEpochSeconds) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @param percent exclusive upper bound
+     * @return number of battery-powered devices whose battery is below {@code percent}
+     */
+    public int countBatteryBelow(int percent) {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & TYPE_MASK) != TYPE_THERMOSTAT && battery[i] < percent) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return bytes currently allocated by the store's arrays (excluding the location table)
+     */
+    public long allocatedBytes() {
+        int cap = heartbeat.length;
+        return (long) cap * (Long.BYTES + 1 + 1 + Double.BYTES + Integer.BYTES + Integer.BYTES + 1)
+                + idBytes.length + (long) idTable.length * Integer.BYTES;
+    }
+
+    /** Clears the status-dirty bit of the device at {@code index} and returns its old value. */
+    boolean takeStatusDirty(int index) {
+        checkIndex(index);
+        if ((flags[index] & DIRTY) == 0) {
+            return false;
+        }
+        flags[index] &= ~DIRTY;
+        return true;
+    }
+
+    // --- helpers ---
+
+    private int add(String id, String loc, byte type) {
+        if (id == null || id.isEmpty() || loc == null || loc.isEmpty()) {
+            throw new IllegalArgumentException("Invalid id or location");
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("id longer than " + MAX_ID_BYTES + " bytes");
+        }
+        if (indexOf(id) >= 0) {
+            throw new IllegalArgumentException("Duplicate id: " + id);
+        }
+        if (size == heartbeat.length) {
+            grow();
+        }
+        if (idBytesUsed + key.length > idBytes.length) {
+            idBytes = Arrays.copyOf(idBytes, Math.max(idBytes.length * 2, idBytesUsed + key.length));
+        }
+        int i = size++;
+        System.arraycopy(key, 0, idBytes, idBytesUsed, key.length);
+        idOffset[i] = idBytesUsed;
+        idLength[i] = (byte) key.length;
+        idBytesUsed += key.length;
+        location[i] = intern(loc);
+        flags[i] = (byte) (type | DIRTY);
+        insertId(i);
+        return i;
+    }
+
+    private int intern(String loc) {
+        Integer ref = locationIds.get(loc);
+        if (ref == null) {
+            ref = locations.size();
+            locations.add(loc);
+            locationIds.put(loc, ref);
+        }
+        return ref;
+    }
+
+    private void grow() {
+        int cap = heartbeat.length * 2;
+        heartbeat = Arrays.copyOf(heartbeat, cap);
+        flags = Arrays.copyOf(flags, cap);
+        battery = Arrays.copyOf(battery, cap);
+        temperature = Arrays.copyOf(temperature, cap);
+        location = Arrays.copyOf(location, cap);
+        idOffset = Arrays.copyOf(idOffset, cap);
+        idLength = Arrays.copyOf(idLength, cap);
+        idTable = new int[tableSizeFor(cap)];
+        for (int i = 0; i < size; i++) {
+            insertId(i);
+        }
+    }
+
+    private void insertId(int index) {
+        int mask = idTable.length - 1;
+        int slot = hash(idBytes, idOffset[index], idLength[index] & 0xFF) & mask;
+        while (idTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        idTable[slot] = index + 1;
+    }
+
+    private boolean idEquals(int index, byte[] key) {
+        int len = idLength[index] & 0xFF;
+        int off = idOffset[index];
+        return len == key.length && Arrays.equals(idBytes, off, off + len, key, 0, len);
+    }
+
+    /** Table with at least twice as many slots as devices, so probes stay short. */
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 8) * 4 - 1);
+    }
+
+    private static int hash(byte[] b, int off, int len) {
+        int h = 1;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + b[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    private void checkBatteryPowered(int index) {
+        checkIndex(index);
+        if ((flags[index] & TYPE_MASK) == TYPE_THERMOSTAT) {
+            throw new IllegalArgumentException("device " + index + " is not battery powered");
+        }
+    }
+
+    private void checkThermostat(int index) {
+        checkIndex(index);
+        if ((flags[index] & TYPE_MASK) != TYPE_THERMOSTAT) {
+            throw new IllegalArgumentException("device " + index + " is not a thermostat");
+        }
+    }
+
+    private static void checkBattery(int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("battery 0..100");
+        }
+    }
+
+    /** Fields shared by every view: all state is read from and written to the store. */
+    private abstract class View extends Device implements Networked {
+        final int index;
+
+        View(int index) {
+            super(idAt(index), locationAt(index));
+            this.index = index;
+        }
+
+        @Override public String getLocation() { return locationAt(index); }
+        @Override void relocate(String loc) { PackedDeviceStore.this.setLocation(index, loc); }
+        @Override public long getLastHeartbeatEpochSeconds() { return heartbeatAt(index); }
+        @Override public void heartbeat(long epochSeconds) { PackedDeviceStore.this.heartbeat(index, epochSeconds); }
+        @Override protected void setConnected(boolean connected) { PackedDeviceStore.this.setConnected(index, connected); }
+        @Override protected void markStatusDirty() { flags[index] |= DIRTY; }
+        @Override boolean takeStatusDirty() { return PackedDeviceStore.this.takeStatusDirty(index); }
+
+        @Override public String getStatus() {
+            StringBuilder sb = new StringBuilder(64);
+            appendStatus(sb);
+            return sb.toString();
+        }
+
+        // Networked
+        @Override public void connect()    { setConnected(true); }
+        @Override public void disconnect() { setConnected(false); }
+        @Override public boolean isConnected() { return PackedDeviceStore.this.isConnected(index); }
+    }
+
+    /** View over a camera or door lock. */
+    private final class BatteryView extends View implements BatteryPowered {
+        private final String typeName;
+
+        BatteryView(int index, String typeName) {
+            super(index);
+            this.typeName = typeName;
+        }
+
+        // BatteryPowered
+        @Override public int getBatteryPercent() { return batteryAt(index); }
+        @Override public void setBatteryPercent(int percent) { setBattery(index, percent); }
+
+        // Status
+        @Override public void appendStatus(StringBuilder sb) {
+            sb.append(typeName).append("[id=").append(getId()).append(", loc=").append(getLocation())
+                    .append(", conn=").append(isConnected() ? "up" : "down")
+                    .append(", batt=").append(getBatteryPercent()).append("%]");
+        }
+    }
+
+    /** View over a thermostat. */
+    private final class ThermostatView extends View {
+        ThermostatView(int index) {
+            super(index);
+        }
+
+        public double getTemperatureC() { return temperatureAt(index); }
+        public void setTemperatureC(double temperatureC) { setTemperature(index, temperatureC); }
+
+        // Status
+        @Override public void appendStatus(StringBuilder sb) {
+            sb.append("Thermostat[id=").append(getId()).append(", loc=").append(getLocation())
+                    .append(", conn=").append(isConnected() ? "up" : "down")
+                    .append(", tempC=").append(getTemperatureC()).append(']');
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a device network, used to exercise {@link ConnectionManager}.
+ * <p>
+ * Every {@link #open(Device)} and {@link #close(Device)} sleeps for a random
+ * latency in {@code [minLatencyMillis, maxLatencyMillis]} and fails with an
+ * {@link IOException} at the configured rate. It also records how many calls
+ * were in flight per location at once, so callers can check concurrency limits.
+ * </p>
+ */
+public class SimulatedNetwork implements NetworkTransport {
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double failureRate;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> peak = new ConcurrentHashMap<>();
+
+    /**
+     * @param minLatencyMillis shortest simulated call
+     * @param maxLatencyMillis longest simulated call
+     * @param failureRate probability (0..1) that a call fails
+     * @throws IllegalArgumentException if the latency range or failure rate is invalid
+     */
+    public SimulatedNetwork(long minLatencyMillis, long maxLatencyMillis, double failureRate) {
+        if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+            throw new IllegalArgumentException("invalid latency range");
+        }
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be in 0..1");
+        }
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public void open(Device device) throws IOException {
+        simulate(device, "connect");
+    }
+
+    @Override
+    public void close(Device device) throws IOException {
+        simulate(device, "disconnect");
+    }
+
+    /**
+     * @return total number of open and close calls made so far
+     */
+    public int calls() {
+        return calls.get();
+    }
+
+    /**
+     * @param location a device location
+     * @return the most calls that were ever in flight at once for that location
+     */
+    public int peakConcurrency(String location) {
+        AtomicInteger p = peak.get(location);
+        return p == null ? 0 : p.get();
+    }
+
+    private void simulate(Device device, String op) throws IOException {
+        calls.incrementAndGet();
+        String loc = device.getLocation();
+        AtomicInteger active = inFlight.computeIfAbsent(loc, k -> new AtomicInteger());
+        peak.computeIfAbsent(loc, k -> new AtomicInteger()).accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            Thread.sleep(minLatencyMillis + rnd.nextLong(maxLatencyMillis - minLatencyMillis + 1));
+            if (rnd.nextDouble() < failureRate) {
+                throw new IOException("simulated " + op + " failure for " + device.getId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(op + " interrupted for " + device.getId());
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
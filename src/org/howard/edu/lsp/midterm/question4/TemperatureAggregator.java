@@ -0,0 +1,353 @@
+package org.howard.edu.lsp.midterm.question4;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling temperature statistics for {@link Thermostat}s.
+ * <p>
+ * Every reading is added to three series: the thermostat's own, its
+ * {@link Device#getLocation() location} (e.g. {@code Library-2F}) and its building
+ * (the part of the location before the first {@code '-'}, e.g. {@code Library}).
+ * Each series is a ring of time buckets covering one hour; a bucket keeps count,
+ * sum, min and max. Location and building series use {@value #BUCKET_SECONDS}-second
+ * buckets. Per-thermostat series use {@value #DEVICE_BUCKET_SECONDS}-second
+ * buckets for the hour plus a one-minute ring of {@value #BUCKET_SECONDS}-second
+ * buckets for {@link Window#ONE_MINUTE}, which keeps them to about 3 KB each so
+ * million-device fleets fit in memory. Queries combine the buckets that fall
+ * inside the requested {@link Window}. Windows are aligned to bucket boundaries,
+ * so their start is accurate to one bucket width.
+ * </p>
+ *
+ * <p>A ring is a single {@code long[]} whose buckets are reset in place when
+ * they fall out of the hour, so recording never allocates. Readings are kept to
+ * 0.001 °C, which lets every field of a bucket share its word with the lap of the
+ * ring it belongs to. Writers update each field with its own CAS and never wait
+ * for each other; the first write of a new lap resets the field it touches.
+ * Readers retry while a reading is half applied, so a query always sees whole
+ * readings. Readings that are not finite or exceed ±{@value #MAX_ABS_C} °C are
+ * ignored.</p>
+ *
+ * <p>Thermostats registered with {@link #track(Thermostat)} report every
+ * {@link Thermostat#setTemperatureC(double)} automatically.</p>
+ */
+public class TemperatureAggregator {
+    /** Width of one location or building bucket. */
+    private static final int BUCKET_SECONDS = 10;
+    /** Width of one per-thermostat bucket. */
+    private static final int DEVICE_BUCKET_SECONDS = 60;
+    /** Largest reading magnitude kept. */
+    private static final double MAX_ABS_C = 1_000_000;
+
+    /**
+     * Supported query windows.
+     */
+    public enum Window {
+        ONE_MINUTE(60), FIFTEEN_MINUTES(900), ONE_HOUR(3600);
+
+        private final long seconds;
+
+        Window(long seconds) {
+            this.seconds = seconds;
+        }
+
+        /**
+         * @return window length in seconds
+         */
+        public long seconds() {
+            return seconds;
+        }
+    }
+
+    /**
+     * Aggregate over one window. {@code min}, {@code max} and {@code average}
+     * are {@code NaN} when {@code count} is zero.
+     */
+    public static final class Stats {
+        /** Number of readings in the window. */
+        public final long count;
+        /** Lowest reading, in °C. */
+        public final double min;
+        /** Highest reading, in °C. */
+        public final double max;
+        /** Mean reading, in °C. */
+        public final double average;
+
+        Stats(long count, double min, double max, double sum) {
+            this.count = count;
+            this.min = count == 0 ? Double.NaN : min;
+            this.max = count == 0 ? Double.NaN : max;
+            this.average = count == 0 ? Double.NaN : sum / count;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[count=" + count + ", min=" + min + ", max=" + max + ", avg=" + average + "]";
+        }
+    }
+
+    private final ConcurrentHashMap<String, Series> byDevice = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Series> byLocation = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Series> byBuilding = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the building part of a location: everything before the first {@code '-'},
+     * or the whole location if it has none.
+     *
+     * @param location a device location such as {@code DormA-1F}
+     * @return the building prefix, e.g. {@code DormA}
+     */
+    public static String buildingOf(String location) {
+        int dash = location.indexOf('-');
+        return dash < 0 ? location : location.substring(0, dash);
+    }
+
+    /**
+     * Routes every future temperature change of {@code thermostat} to this aggregator.
+     * A thermostat reports to at most one aggregator.
+     *
+     * @param thermostat the thermostat to follow
+     */
+    public void track(Thermostat thermostat) {
+        thermostat.attachAggregator(this);
+    }
+
+    /**
+     * Stops routing the thermostat's readings here. Collected statistics are kept.
+     *
+     * @param thermostat the thermostat to stop following
+     */
+    public void untrack(Thermostat thermostat) {
+        thermostat.detachAggregator(this);
+    }
+
+    /**
+     * Adds a reading taken at an explicit time, e.g. a gateway timestamp or a backfill.
+     * Readings older than the retained hour are ignored.
+     *
+     * @param thermostat the reporting thermostat
+     * @param temperatureC the reading
+     * @param epochSeconds time of the reading
+     */
+    public void record(Thermostat thermostat, double temperatureC, long epochSeconds) {
+        if (!(Math.abs(temperatureC) <= MAX_ABS_C)) {
+            return;
+        }
+        long millis = Math.round(temperatureC * 1000);
+        String location = thermostat.getLocation();
+        seriesFor(byDevice, thermostat.getId(), true).add(millis, epochSeconds);
+        seriesFor(byLocation, location, false).add(millis, epochSeconds);
+        seriesFor(byBuilding, buildingOf(location), false).add(millis, epochSeconds);
+    }
+
+    /**
+     * @param thermostatId a thermostat id
+     * @param window the window ending now
+     * @return statistics for that thermostat
+     */
+    public Stats forDevice(String thermostatId, Window window) {
+        return forDevice(thermostatId, window, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param thermostatId a thermostat id
+     * @param window the window length
+     * @param nowEpochSeconds end of the window
+     * @return statistics for that thermostat
+     */
+    public Stats forDevice(String thermostatId, Window window, long nowEpochSeconds) {
+        return query(byDevice, thermostatId, window, nowEpochSeconds);
+    }
+
+    /**
+     * @param location an exact location such as {@code Library-2F}
+     * @param window the window ending now
+     * @return statistics across all thermostats at that location
+     */
+    public Stats forLocation(String location, Window window) {
+        return forLocation(location, window, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param location an exact location such as {@code Library-2F}
+     * @param window the window length
+     * @param nowEpochSeconds end of the window
+     * @return statistics across all thermostats at that location
+     */
+    public Stats forLocation(String location, Window window, long nowEpochSeconds) {
+        return query(byLocation, location, window, nowEpochSeconds);
+    }
+
+    /**
+     * @param building a building prefix such as {@code Library}
+     * @param window the window ending now
+     * @return statistics across all thermostats in that building
+     */
+    public Stats forBuilding(String building, Window window) {
+        return forBuilding(building, window, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param building a building prefix such as {@code Library}
+     * @param window the window length
+     * @param nowEpochSeconds end of the window
+     * @return statistics across all thermostats in that building
+     */
+    public Stats forBuilding(String building, Window window, long nowEpochSeconds) {
+        return query(byBuilding, building, window, nowEpochSeconds);
+    }
+
+    // --- helpers ---
+
+    private static Series seriesFor(ConcurrentHashMap<String, Series> map, String key, boolean device) {
+        Series s = map.get(key);
+        if (s != null) {
+            return s;
+        }
+        return map.computeIfAbsent(key, k -> device
+                ? new Series(DEVICE_BUCKET_SECONDS, new Series(BUCKET_SECONDS, 60, null))
+                : new Series(BUCKET_SECONDS, null));
+    }
+
+    private static Stats query(ConcurrentHashMap<String, Series> map, String key, Window window, long now) {
+        Series s = map.get(key);
+        return s == null ? new Stats(0, 0, 0, 0) : s.stats(window.seconds, now);
+    }
+
+    /**
+     * Ring of buckets, five {@code long}s per bucket:
+     * {@code [started][count][sum][min][max]}. Each word packs the lap of the ring
+     * its value belongs to (bits 40-63; 0 = never used) with the value (bits 0-39,
+     * signed); temperatures are in thousandths of a degree. {@code started} counts
+     * readings being applied and {@code count} readings fully applied, so a reader
+     * that sees them equal has a consistent bucket.
+     */
+    private static final class Series {
+        private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+        private static final int WORDS = 5;
+        private static final int STARTED = 0;
+        private static final int COUNT = 1;
+        private static final int SUM = 2;
+        private static final int MIN = 3;
+        private static final int MAX = 4;
+        private static final int VALUE_BITS = 40;
+        private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+        /** Laps are stored modulo this, plus one, so that 0 never names a lap. */
+        private static final int LAPS = (1 << (Long.SIZE - VALUE_BITS)) - 1;
+
+        private final int bucketSeconds;
+        private final int spanSeconds;
+        private final int buckets;
+        private final long[] data;
+        /** Finer ring answering windows it covers, or {@code null}. */
+        private final Series recent;
+
+        Series(int bucketSeconds, Series recent) {
+            this(bucketSeconds, 3600, recent);
+        }
+
+        Series(int bucketSeconds, int spanSeconds, Series recent) {
+            this.bucketSeconds = bucketSeconds;
+            this.spanSeconds = spanSeconds;
+            this.buckets = spanSeconds / bucketSeconds + 1; // the span plus the bucket being filled
+            this.data = new long[buckets * WORDS];
+            this.recent = recent;
+        }
+
+        void add(long millis, long epochSeconds) {
+            if (recent != null) {
+                recent.add(millis, epochSeconds);
+            }
+            long id = Math.floorDiv(epochSeconds, bucketSeconds);
+            int base = (int) Math.floorMod(id, (long) buckets) * WORDS;
+            int lap = lapOf(id);
+            // A false return means the bucket moved on to a newer lap: the reading is too old.
+            if (fold(base + STARTED, lap, 1, COUNT)
+                    && fold(base + SUM, lap, millis, SUM)
+                    && fold(base + MIN, lap, millis, MIN)
+                    && fold(base + MAX, lap, millis, MAX)) {
+                fold(base + COUNT, lap, 1, COUNT);
+            }
+        }
+
+        Stats stats(long windowSeconds, long now) {
+            if (recent != null && windowSeconds <= recent.spanSeconds) {
+                return recent.stats(windowSeconds, now);
+            }
+            long last = Math.floorDiv(now, bucketSeconds);
+            long first = Math.max(last - windowSeconds / bucketSeconds + 1, last - buckets + 1);
+            long count = 0;
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long id = first; id <= last; id++) {
+                int base = (int) Math.floorMod(id, (long) buckets) * WORDS;
+                int lap = lapOf(id);
+                while (true) {
+                    long done = (long) SLOTS.getAcquire(data, base + COUNT);
+                    if (lapIn(done) != lap) {
+                        break; // empty, or recycled for a newer lap
+                    }
+                    long s = (long) SLOTS.getAcquire(data, base + SUM);
+                    long lo = (long) SLOTS.getAcquire(data, base + MIN);
+                    long hi = (long) SLOTS.getAcquire(data, base + MAX);
+                    long started = (long) SLOTS.getAcquire(data, base + STARTED);
+                    if (started == done && lapIn(s) == lap && lapIn(lo) == lap && lapIn(hi) == lap) {
+                        count += valueIn(done);
+                        sum += valueIn(s);
+                        min = Math.min(min, valueIn(lo));
+                        max = Math.max(max, valueIn(hi));
+                        break;
+                    }
+                    if (lapIn(started) != lap) {
+                        break;
+                    }
+                    Thread.onSpinWait(); // a reading is half applied; look again
+                }
+            }
+            return new Stats(count, min / 1000.0, max / 1000.0, sum / 1000.0);
+        }
+
+        /**
+         * Combines {@code v} into word {@code i} for {@code lap}, replacing a value
+         * left by an older lap.
+         *
+         * @param op {@link #COUNT} or {@link #SUM} to add, {@link #MIN} or {@link #MAX}
+         * @return {@code false} if the word already belongs to a newer lap
+         */
+        private boolean fold(int i, int lap, long v, int op) {
+            while (true) {
+                long word = (long) SLOTS.getVolatile(data, i);
+                int have = lapIn(word);
+                long value;
+                if (have == lap) {
+                    long old = valueIn(word);
+                    value = op == MIN ? Math.min(old, v) : op == MAX ? Math.max(old, v) : old + v;
+                    if (value == old && op != COUNT && op != SUM) {
+                        return true;
+                    }
+                } else if (have != 0 && Math.floorMod(have - lap, LAPS) < LAPS / 2) {
+                    return false;
+                } else {
+                    value = v;
+                }
+                if (SLOTS.compareAndSet(data, i, word, ((long) lap << VALUE_BITS) | (value & VALUE_MASK))) {
+                    return true;
+                }
+            }
+        }
+
+        private int lapOf(long id) {
+            return (int) Math.floorMod(Math.floorDiv(id, (long) buckets), (long) LAPS) + 1;
+        }
+
+        private static int lapIn(long word) {
+            return (int) (word >>> VALUE_BITS);
+        }
+
+        private static long valueIn(long word) {
+            return word << (Long.SIZE - VALUE_BITS) >> (Long.SIZE - VALUE_BITS);
+        }
+    }
+}
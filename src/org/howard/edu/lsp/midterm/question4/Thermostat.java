@@ -1,7 +1,8 @@
 package org.howard.edu.lsp.midterm.question4;
 
 public class Thermostat extends Device implements Networked {
-    private double temperatureC;
+    private volatile double temperatureC;
+    private volatile TemperatureAggregator aggregator;
 
     public Thermostat(String id, String location, double initialTempC) {
         super(id, location);
@@ -9,7 +10,24 @@ public class Thermostat extends Device implements Networked {
     }
 
     public double getTemperatureC() { return temperatureC; }
-    public void setTemperatureC(double temperatureC) { this.temperatureC = temperatureC; }
+    public void setTemperatureC(double temperatureC) {
+        if (Double.compare(this.temperatureC, temperatureC) != 0) {
+            this.temperatureC = temperatureC;
+            markStatusDirty();
+        }
+        publishEvent(DeviceEventBus.Type.TEMPERATURE, 0, temperatureC);
+        TemperatureAggregator agg = aggregator;
+        if (agg != null) {
+            agg.record(this, temperatureC, System.currentTimeMillis() / 1000);
+        }
+    }
+
+    void attachAggregator(TemperatureAggregator agg) { this.aggregator = agg; }
+    void detachAggregator(TemperatureAggregator agg) {
+        if (this.aggregator == agg) {
+            this.aggregator = null;
+        }
+    }
 
     // Networked
     @Override public void connect()    { setConnected(true); }
@@ -18,8 +36,14 @@ public class Thermostat extends Device implements Networked {
 
     // Status
     @Override public String getStatus() {
-        String connStatus = isConnected() ? "up" : "down";
-        return "Thermostat[id=" + getId() + ", loc=" + getLocation()
-                + ", conn=" + connStatus + ", tempC=" + temperatureC + "]";
+        StringBuilder sb = new StringBuilder(64);
+        appendStatus(sb);
+        return sb.toString();
+    }
+
+    @Override public void appendStatus(StringBuilder sb) {
+        sb.append("Thermostat[id=").append(getId()).append(", loc=").append(getLocation())
+                .append(", conn=").append(isConnected() ? "up" : "down")
+                .append(", tempC=").append(temperatureC).append(']');
     }
 }